@@ -2,13 +2,12 @@ package com.hust.classroom;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class ClassroomApplication {
     public static void main(String[] args) {
         SpringApplication.run(ClassroomApplication.class, args);
     }
 }
-
-
-
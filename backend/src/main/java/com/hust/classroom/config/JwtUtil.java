@@ -1,6 +1,11 @@
 package com.hust.classroom.config;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
@@ -8,58 +13,106 @@ import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.Map;
+import java.util.UUID;
 import java.util.function.Function;
 
 @Component
 public class JwtUtil {
     
-    @Value("${jwt.secret:mySecretKeyForJWTTokenGeneration12345678901234567890}")
-    private String secret;
+    private final Long expiration;
     
-    @Value("${jwt.expiration:86400000}") // 24 hours
-    private Long expiration;
+    // Key và parser được tạo một lần (thread-safe), không dựng lại ở mỗi lần gọi
+    private final SecretKey signingKey;
+    private final JwtParser parser;
     
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+    // Token đã xác thực -> principal, giữ tới khi token hết hạn; key là SHA-256 của token
+    private final Cache<String, TokenPrincipal> principalCache;
+    
+    public JwtUtil(@Value("${jwt.secret:mySecretKeyForJWTTokenGeneration12345678901234567890}") String secret,
+                   @Value("${jwt.expiration:86400000}") Long expiration, // 24 hours
+                   @Value("${jwt.principal-cache-size:10000}") long principalCacheSize) {
+        this.expiration = expiration;
+        this.signingKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        this.parser = Jwts.parser()
+                .verifyWith(signingKey)
+                .build();
+        this.principalCache = Caffeine.newBuilder()
+                .maximumSize(principalCacheSize)
+                .expireAfter(Expiry.creating((String key, TokenPrincipal principal) -> principal.getExpiresAt() == null
+                        ? Duration.ofMillis(expiration)
+                        : Duration.ofMillis(Math.max(0, principal.getExpiresAt().getTime() - System.currentTimeMillis()))))
+                .build();
     }
     
     public String generateToken(Integer userId, String email, String role) {
+        return generateToken(userId, email, role, UUID.randomUUID().toString());
+    }
+    
+    public String generateToken(Integer userId, String email, String role, String tokenId) {
         Map<String, Object> claims = new HashMap<>();
         claims.put("userId", userId);
         claims.put("email", email);
         claims.put("role", role);
-        return createToken(claims, email);
+        return createToken(claims, email, tokenId);
+    }
+    
+    // Thời hạn access token (ms)
+    public Long getExpiration() {
+        return expiration;
     }
     
-    private String createToken(Map<String, Object> claims, String subject) {
+    private String createToken(Map<String, Object> claims, String subject, String tokenId) {
         return Jwts.builder()
                 .claims(claims)
+                .id(tokenId)
                 .subject(subject)
                 .issuedAt(new Date(System.currentTimeMillis()))
                 .expiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSigningKey())
+                .signWith(signingKey)
                 .compact();
     }
     
+    // Xác thực chữ ký một lần; các lần sau với cùng token lấy từ cache.
+    // Ném JwtException nếu token sai chữ ký hoặc đã hết hạn
+    public TokenPrincipal parse(String token) {
+        String cacheKey = hashToken(token);
+        TokenPrincipal cached = principalCache.getIfPresent(cacheKey);
+        if (cached != null && !cached.isExpired()) {
+            return cached;
+        }
+        
+        Claims claims = extractAllClaims(token);
+        TokenPrincipal principal = new TokenPrincipal(
+                claims.get("userId", Integer.class),
+                claims.getSubject(),
+                claims.get("role", String.class),
+                claims.getId(),
+                claims.getExpiration());
+        principalCache.put(cacheKey, principal);
+        return principal;
+    }
+    
     public String extractEmail(String token) {
-        return extractClaim(token, Claims::getSubject);
+        return parse(token).getEmail();
     }
     
     public Integer extractUserId(String token) {
-        Claims claims = extractAllClaims(token);
-        return claims.get("userId", Integer.class);
+        return parse(token).getUserId();
     }
     
     public String extractRole(String token) {
-        Claims claims = extractAllClaims(token);
-        return claims.get("role", String.class);
+        return parse(token).getRole();
     }
     
     public Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+        return parse(token).getExpiresAt();
     }
     
     public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
@@ -68,22 +121,24 @@ public class JwtUtil {
     }
     
     private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        return parser.parseSignedClaims(token).getPayload();
     }
     
-    private Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    public Boolean validateToken(String token, String email) {
+        try {
+            TokenPrincipal principal = parse(token);
+            return principal.getEmail().equals(email) && !principal.isExpired();
+        } catch (ExpiredJwtException e) {
+            return false;
+        }
     }
     
-    public Boolean validateToken(String token, String email) {
-        final String tokenEmail = extractEmail(token);
-        return (tokenEmail.equals(email) && !isTokenExpired(token));
+    private String hashToken(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 không khả dụng", e);
+        }
     }
 }
-
-
-
@@ -0,0 +1,23 @@
+package com.hust.classroom.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Date;
+
+// Thông tin đã xác thực từ JWT; bất biến nên có thể dùng chung giữa các request
+@Getter
+@ToString
+@AllArgsConstructor
+public final class TokenPrincipal {
+    private final Integer userId;
+    private final String email;
+    private final String role;
+    private final String tokenId; // jti, dùng để thu hồi token
+    private final Date expiresAt;
+
+    public boolean isExpired() {
+        return expiresAt != null && expiresAt.before(new Date());
+    }
+}
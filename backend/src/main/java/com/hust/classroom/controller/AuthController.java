@@ -1,10 +1,18 @@
 package com.hust.classroom.controller;
 
+import com.hust.classroom.config.JwtUtil;
+import com.hust.classroom.config.TokenPrincipal;
 import com.hust.classroom.dto.AuthResponse;
 import com.hust.classroom.dto.LoginRequest;
 import com.hust.classroom.dto.RegisterRequest;
+import com.hust.classroom.security.AuthRateLimiter;
 import com.hust.classroom.service.AuthService;
+import com.hust.classroom.service.PasswordHashingService;
+import com.hust.classroom.service.RefreshTokenService;
+import io.jsonwebtoken.JwtException;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -19,12 +27,23 @@ import java.util.Map;
 public class AuthController {
     
     private final AuthService authService;
+    private final RefreshTokenService refreshTokenService;
+    private final JwtUtil jwtUtil;
+    private final AuthRateLimiter authRateLimiter;
     
     @PostMapping("/login")
-    public ResponseEntity<?> login(@RequestBody LoginRequest request) {
+    public ResponseEntity<?> login(@RequestBody LoginRequest request, HttpServletRequest httpRequest) {
+        long retryAfter = authRateLimiter.tryAcquire(AuthRateLimiter.Action.LOGIN,
+                httpRequest.getRemoteAddr(), request.getEmail());
+        if (retryAfter > 0) {
+            return tooManyRequests(retryAfter);
+        }
+        
         try {
             AuthResponse response = authService.login(request);
             return ResponseEntity.ok(response);
+        } catch (PasswordHashingService.OverloadedException e) {
+            return overloaded(e);
         } catch (RuntimeException e) {
             Map<String, String> errorResponse = new HashMap<>();
             errorResponse.put("error", e.getMessage());
@@ -43,6 +62,8 @@ public class AuthController {
         try {
             AuthResponse response = authService.register(request);
             return ResponseEntity.ok(response);
+        } catch (PasswordHashingService.OverloadedException e) {
+            return overloaded(e);
         } catch (RuntimeException e) {
             System.err.println("❌ Register error: " + e.getMessage());
             Map<String, String> errorResponse = new HashMap<>();
@@ -58,7 +79,7 @@ public class AuthController {
     }
     
     @PostMapping("/forgot-password")
-    public ResponseEntity<?> forgotPassword(@RequestBody Map<String, String> request) {
+    public ResponseEntity<?> forgotPassword(@RequestBody Map<String, String> request, HttpServletRequest httpRequest) {
         try {
             String email = request.get("email");
             if (email == null || email.isEmpty()) {
@@ -67,12 +88,20 @@ public class AuthController {
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
             }
             
+            long retryAfter = authRateLimiter.tryAcquire(AuthRateLimiter.Action.FORGOT_PASSWORD,
+                    httpRequest.getRemoteAddr(), email);
+            if (retryAfter > 0) {
+                return tooManyRequests(retryAfter);
+            }
+            
             String newPassword = authService.forgotPassword(email);
             
             Map<String, String> successResponse = new HashMap<>();
             successResponse.put("message", "Mật khẩu mới đã được gửi về email của bạn!");
             successResponse.put("newPassword", newPassword); // Chỉ trong môi trường dev
             return ResponseEntity.ok(successResponse);
+        } catch (PasswordHashingService.OverloadedException e) {
+            return overloaded(e);
         } catch (RuntimeException e) {
             System.err.println("❌ Forgot password error: " + e.getMessage());
             Map<String, String> errorResponse = new HashMap<>();
@@ -86,6 +115,77 @@ public class AuthController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
         }
     }
-}
-
+    
+    // Đổi refresh token lấy access token mới (refresh token cũ bị thu hồi)
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refresh(@RequestBody Map<String, String> request) {
+        try {
+            String refreshToken = request.get("refreshToken");
+            if (refreshToken == null || refreshToken.isEmpty()) {
+                Map<String, String> errorResponse = new HashMap<>();
+                errorResponse.put("error", "Refresh token không được để trống!");
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
+            }
+            
+            AuthResponse response = refreshTokenService.refresh(refreshToken);
+            return ResponseEntity.ok(response);
+        } catch (RuntimeException e) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(errorResponse);
+        } catch (Exception e) {
+            System.err.println("❌ Error in refresh: " + e.getMessage());
+            e.printStackTrace();
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Lỗi server: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+        }
+    }
+    
+    // Đăng xuất: thu hồi refresh token và access token hiện tại
+    @PostMapping("/logout")
+    public ResponseEntity<?> logout(@RequestBody(required = false) Map<String, String> request,
+                                    @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        try {
+            String refreshToken = request != null ? request.get("refreshToken") : null;
+            TokenPrincipal accessToken = null;
+            if (authorization != null && authorization.startsWith("Bearer ")) {
+                try {
+                    accessToken = jwtUtil.parse(authorization.substring(7));
+                } catch (JwtException | IllegalArgumentException e) {
+                    // Access token đã hết hạn hoặc không hợp lệ: chỉ thu hồi refresh token
+                }
+            }
+            
+            refreshTokenService.logout(refreshToken, accessToken);
+            
+            Map<String, String> successResponse = new HashMap<>();
+            successResponse.put("message", "Đăng xuất thành công!");
+            return ResponseEntity.ok(successResponse);
+        } catch (Exception e) {
+            System.err.println("❌ Error in logout: " + e.getMessage());
+            e.printStackTrace();
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Lỗi server: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+        }
+    }
+    
+    // Hash mật khẩu đang quá tải: báo client thử lại sau
+    private ResponseEntity<?> overloaded(PasswordHashingService.OverloadedException e) {
+        Map<String, String> errorResponse = new HashMap<>();
+        errorResponse.put("error", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "2")
+                .body(errorResponse);
+    }
 
+    // Vượt giới hạn tần suất: trả về ngay, không chạm DB hay SMTP
+    private ResponseEntity<?> tooManyRequests(long retryAfterSeconds) {
+        Map<String, String> errorResponse = new HashMap<>();
+        errorResponse.put("error", "Bạn thao tác quá nhanh, vui lòng thử lại sau " + retryAfterSeconds + " giây!");
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(errorResponse);
+    }
+}
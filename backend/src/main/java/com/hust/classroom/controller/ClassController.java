@@ -1,14 +1,29 @@
 package com.hust.classroom.controller;
 
+import com.hust.classroom.dto.ClassDashboard;
+import com.hust.classroom.dto.ClassJoinInfo;
+import com.hust.classroom.dto.ClassListItem;
+import com.hust.classroom.dto.CursorPage;
+import com.hust.classroom.dto.RosterEntry;
+import com.hust.classroom.dto.RosterImportReport;
 import com.hust.classroom.entity.Class;
 import com.hust.classroom.entity.ClassStudent;
 import com.hust.classroom.entity.User;
+import com.hust.classroom.security.AuthPrincipal;
+import com.hust.classroom.service.ClassDashboardService;
+import com.hust.classroom.service.ClassListService;
 import com.hust.classroom.service.ClassService;
+import com.hust.classroom.service.PurgeService;
+import com.hust.classroom.service.RosterImportService;
+import com.hust.classroom.service.RosterService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -21,16 +36,41 @@ import java.util.Optional;
 public class ClassController {
     
     private final ClassService classService;
+    private final ClassDashboardService classDashboardService;
+    private final ClassListService classListService;
+    private final RosterImportService rosterImportService;
+    private final RosterService rosterService;
+    private final PurgeService purgeService;
     
+    // Không có limit: trả về toàn bộ danh sách lớp như trước; có limit: trả về một trang ClassListItem kèm nextCursor,
+    // lọc theo q (tên lớp / mã tham gia) và teacherId (chỉ Admin)
     @GetMapping
     public ResponseEntity<?> getAllClasses(
             @RequestParam(required = false) Integer userId,
-            @RequestParam(required = false) String role) {
+            @RequestParam(required = false) String role,
+            @RequestParam(required = false) Integer teacherId,
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal principal) {
         try {
+            // Ưu tiên người gọi đã xác thực thay vì userId/role gửi lên
+            if (principal != null) {
+                userId = principal.getUserId();
+                role = principal.getRole().name();
+            }
             System.out.println("🔵 [Controller] getAllClasses - userId: " + userId + ", role: " + role);
+            if (limit != null) {
+                CursorPage<ClassListItem> page = classListService.getClassPage(userId, role, teacherId, q, cursor, limit);
+                return ResponseEntity.ok(page);
+            }
             List<Class> classes = classService.getAllClasses(userId, role);
             System.out.println("🔵 [Controller] Returning " + classes.size() + " classes");
             return ResponseEntity.ok(classes);
+        } catch (IllegalArgumentException e) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
         } catch (Exception e) {
             System.err.println("❌ [Controller] Error getting classes: " + e.getMessage());
             e.printStackTrace();
@@ -50,8 +90,30 @@ public class ClassController {
         }
     }
     
+    // Số liệu tổng quan + vài bài đăng mới nhất của lớp trong một request
+    @GetMapping("/{id}/dashboard")
+    public ResponseEntity<?> getDashboard(@PathVariable Integer id,
+                                          @RequestParam(required = false, defaultValue = "5") int recentPosts) {
+        try {
+            Optional<ClassDashboard> dashboard = classDashboardService.getDashboard(id, recentPosts);
+            if (dashboard.isEmpty()) {
+                Map<String, String> errorResponse = new HashMap<>();
+                errorResponse.put("error", "Không tìm thấy lớp học!");
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
+            }
+            return ResponseEntity.ok(dashboard.get());
+        } catch (Exception e) {
+            System.err.println("❌ [Controller] Error getting class dashboard: " + e.getMessage());
+            e.printStackTrace();
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Lỗi khi lấy tổng quan lớp học: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+        }
+    }
+    
     @PostMapping
-    public ResponseEntity<?> createClass(@RequestBody Map<String, Object> request) {
+    public ResponseEntity<?> createClass(@RequestBody Map<String, Object> request,
+                                         @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal principal) {
         try {
             System.out.println("🔵 [Backend] Received create class request: " + request);
             
@@ -74,8 +136,11 @@ public class ClassController {
             classEntity.setMoTa(moTa);
             classEntity.setMaThamGia(maThamGia);
             
-            // Set giáo viên
+            // Set giáo viên (giáo viên đã đăng nhập tạo lớp cho chính mình)
             Object giaoVienIdObj = request.get("giaoVienID");
+            if (principal != null && principal.isTeacher()) {
+                giaoVienIdObj = principal.getUserId();
+            }
             if (giaoVienIdObj != null) {
                 Integer giaoVienID;
                 if (giaoVienIdObj instanceof Number) {
@@ -152,8 +217,14 @@ public class ClassController {
     }
     
     @DeleteMapping("/{id}")
-    public ResponseEntity<?> deleteClass(@PathVariable Integer id) {
+    public ResponseEntity<?> deleteClass(@PathVariable Integer id,
+                                         @RequestParam(required = false, defaultValue = "false") boolean async) {
         try {
+            // async=true: xóa nền theo từng đợt, trả về jobId để theo dõi tiến độ (GET /api/purge-jobs/{jobId})
+            if (async) {
+                return ResponseEntity.status(HttpStatus.ACCEPTED).body(purgeService.purgeClass(id));
+            }
+            
             classService.deleteClass(id);
             Map<String, String> successResponse = new HashMap<>();
             successResponse.put("message", "Đã xóa lớp học thành công!");
@@ -173,22 +244,11 @@ public class ClassController {
     }
     
     @PostMapping("/enroll")
-    public ResponseEntity<?> enrollStudent(@RequestBody Map<String, Object> request) {
+    public ResponseEntity<?> enrollStudent(@RequestBody Map<String, Object> request,
+                                           @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal principal) {
         try {
             System.out.println("🔵 [Controller] enrollStudent called with: " + request);
             
-            Object sinhVienIDObj = request.get("sinhVienID");
-            Integer sinhVienID;
-            if (sinhVienIDObj instanceof Number) {
-                sinhVienID = ((Number) sinhVienIDObj).intValue();
-            } else if (sinhVienIDObj != null) {
-                sinhVienID = Integer.parseInt(sinhVienIDObj.toString());
-            } else {
-                Map<String, String> errorResponse = new HashMap<>();
-                errorResponse.put("error", "Thiếu thông tin sinh viên!");
-                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
-            }
-            
             String maThamGia = (String) request.get("maThamGia");
             if (maThamGia == null || maThamGia.isEmpty()) {
                 Map<String, String> errorResponse = new HashMap<>();
@@ -196,12 +256,28 @@ public class ClassController {
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
             }
             
-            ClassStudent result = classService.enrollStudent(sinhVienID, maThamGia);
+            ClassJoinInfo result;
+            if (principal != null && principal.isStudent()) {
+                result = classService.enrollStudent(principal, maThamGia);
+            } else {
+                Object sinhVienIDObj = request.get("sinhVienID");
+                Integer sinhVienID;
+                if (sinhVienIDObj instanceof Number) {
+                    sinhVienID = ((Number) sinhVienIDObj).intValue();
+                } else if (sinhVienIDObj != null) {
+                    sinhVienID = Integer.parseInt(sinhVienIDObj.toString());
+                } else {
+                    Map<String, String> errorResponse = new HashMap<>();
+                    errorResponse.put("error", "Thiếu thông tin sinh viên!");
+                    return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
+                }
+                result = classService.enrollStudent(sinhVienID, maThamGia);
+            }
             
             // Trả về thông tin lớp đã tham gia
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
-            response.put("class", result.getLopHoc());
+            response.put("class", result);
             response.put("message", "Đã tham gia lớp học thành công!");
             
             return ResponseEntity.ok(response);
@@ -213,13 +289,28 @@ public class ClassController {
         }
     }
     
+    // Không có limit: trả về toàn bộ danh sách dạng mảng như trước; có limit: trả về một trang kèm nextCursor
     @GetMapping("/{id}/students")
-    public ResponseEntity<?> getStudents(@PathVariable Integer id) {
+    public ResponseEntity<?> getStudents(@PathVariable Integer id,
+                                         @RequestParam(required = false) String sort,
+                                         @RequestParam(required = false, defaultValue = "asc") String direction,
+                                         @RequestParam(required = false) String cursor,
+                                         @RequestParam(required = false) Integer limit) {
         try {
             System.out.println("🔵 [Controller] Getting students for class ID: " + id);
-            List<User> students = classService.getStudentsByClassId(id);
-            System.out.println("🔵 [Controller] Returning " + students.size() + " students");
-            return ResponseEntity.ok(students);
+            RosterService.Sort rosterSort = RosterService.Sort.parse(sort);
+            boolean descending = "desc".equalsIgnoreCase(direction);
+            if (limit == null) {
+                List<RosterEntry> students = rosterService.getRoster(id, rosterSort, descending);
+                System.out.println("🔵 [Controller] Returning " + students.size() + " students");
+                return ResponseEntity.ok(students);
+            }
+            CursorPage<RosterEntry> page = rosterService.getRosterPage(id, rosterSort, descending, cursor, limit);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
         } catch (Exception e) {
             System.err.println("❌ [Controller] Error getting students: " + e.getMessage());
             e.printStackTrace();
@@ -255,5 +346,29 @@ public class ClassController {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
         }
     }
+    
+    // Import danh sách sinh viên từ file CSV (cột email và/hoặc mssv), trả về kết quả từng dòng
+    @PostMapping("/{id}/students/import")
+    public ResponseEntity<?> importStudents(@PathVariable Integer id, @RequestParam("file") MultipartFile file) {
+        if (file.isEmpty()) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "File rỗng!");
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
+        }
+        
+        try (InputStream in = file.getInputStream()) {
+            RosterImportReport report = rosterImportService.importCsv(id, in);
+            return ResponseEntity.ok(report);
+        } catch (RuntimeException e) {
+            System.err.println("❌ [Controller] Error importing students: " + e.getMessage());
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
+        } catch (IOException e) {
+            System.err.println("❌ [Controller] Error reading roster file: " + e.getMessage());
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Không đọc được file: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+        }
+    }
 }
-
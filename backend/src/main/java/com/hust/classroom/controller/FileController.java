@@ -1,31 +1,60 @@
 package com.hust.classroom.controller;
 
-import org.springframework.beans.factory.annotation.Value;
+import com.hust.classroom.entity.StoredFile;
+import com.hust.classroom.entity.UploadSession;
+import com.hust.classroom.security.AuthPrincipal;
+import com.hust.classroom.service.ChunkedUploadService;
+import com.hust.classroom.service.CompressedVariantService;
+import com.hust.classroom.service.FileDownloadService;
+import com.hust.classroom.service.FileStorageService;
+import com.hust.classroom.service.HotFileCache;
+import com.hust.classroom.service.OrphanFileCollector;
+import com.hust.classroom.service.PreviewService;
+import com.hust.classroom.storage.BlobStorage;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.ZoneId;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/files")
+@RequiredArgsConstructor
 @CrossOrigin(origins = {"http://localhost:3000", "http://localhost:5173", "http://localhost:5174"})
 public class FileController {
 
-    @Value("${file.upload-dir:uploads}")
-    private String uploadDir;
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(365, TimeUnit.DAYS).cachePrivate().immutable();
+
+    private final FileDownloadService fileDownloadService;
+    private final FileStorageService fileStorageService;
+    private final ChunkedUploadService chunkedUploadService;
+    private final BlobStorage blobStorage;
+    private final HotFileCache hotFileCache;
+    private final OrphanFileCollector orphanFileCollector;
+    private final CompressedVariantService compressedVariantService;
+    private final PreviewService previewService;
 
     @PostMapping("/upload")
-    public ResponseEntity<?> uploadFile(@RequestParam("file") MultipartFile file) {
+    public ResponseEntity<?> uploadFile(@RequestParam("file") MultipartFile file,
+                                        @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal principal) {
         try {
             if (file.isEmpty()) {
                 Map<String, String> errorResponse = new HashMap<>();
@@ -33,23 +62,13 @@ public class FileController {
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
             }
 
-            // Tạo thư mục uploads nếu chưa có
-            Path uploadPath = Paths.get(uploadDir);
-            if (!Files.exists(uploadPath)) {
-                Files.createDirectories(uploadPath);
-            }
-
-            // Tạo tên file unique
+            // Lưu vào kho nội dung (trùng nội dung thì dùng chung blob)
             String originalFilename = file.getOriginalFilename();
-            String extension = "";
-            if (originalFilename != null && originalFilename.contains(".")) {
-                extension = originalFilename.substring(originalFilename.lastIndexOf("."));
+            StoredFile storedFile;
+            try (InputStream inputStream = file.getInputStream()) {
+                storedFile = fileStorageService.store(inputStream, originalFilename, uploaderId(principal));
             }
-            String uniqueFilename = UUID.randomUUID().toString() + extension;
-
-            // Lưu file
-            Path filePath = uploadPath.resolve(uniqueFilename);
-            Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
+            String uniqueFilename = storedFile.getFilename();
 
             // Trả về URL file
             String fileUrl = "/api/files/" + uniqueFilename;
@@ -68,37 +87,274 @@ public class FileController {
         }
     }
 
-    @GetMapping("/{filename:.+}")
-    public ResponseEntity<?> getFile(@PathVariable String filename) {
+    // Upload theo chunk, có thể tiếp tục khi mất kết nối:
+    // khởi tạo -> gửi từng chunk tại offset -> hoàn tất
+    @PostMapping("/upload/sessions")
+    public ResponseEntity<?> initChunkedUpload(@RequestBody Map<String, Object> request,
+                                               @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal principal) {
         try {
-            Path filePath = Paths.get(uploadDir).resolve(filename).normalize();
-            
-            // Kiểm tra file có tồn tại không
-            if (!Files.exists(filePath)) {
+            String filename = (String) request.get("filename");
+            Object sizeObj = request.get("size");
+            Long size = null;
+            if (sizeObj instanceof Number) {
+                size = ((Number) sizeObj).longValue();
+            } else if (sizeObj != null) {
+                size = Long.parseLong(sizeObj.toString());
+            }
+
+            UploadSession session = chunkedUploadService.initUpload(filename, size, uploaderId(principal));
+            return ResponseEntity.ok(chunkedUploadStatus(session, 0));
+        } catch (NumberFormatException e) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Kích thước file không hợp lệ!");
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
+        } catch (RuntimeException e) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
+        } catch (IOException e) {
+            System.err.println("❌ Error initializing chunked upload: " + e.getMessage());
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Lỗi khi khởi tạo upload: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+        }
+    }
+
+    @GetMapping("/upload/sessions/{uploadId}")
+    public ResponseEntity<?> getChunkedUploadStatus(@PathVariable String uploadId,
+                                                    @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal principal) {
+        try {
+            UploadSession session = chunkedUploadService.getSession(uploadId);
+            if (!ownsUpload(session, principal)) {
+                return uploadForbidden();
+            }
+            return ResponseEntity.ok(chunkedUploadStatus(session, chunkedUploadService.getReceivedBytes(session)));
+        } catch (RuntimeException e) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
+        } catch (IOException e) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Lỗi khi đọc trạng thái upload: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+        }
+    }
+
+    @PutMapping("/upload/sessions/{uploadId}")
+    public ResponseEntity<?> appendChunk(@PathVariable String uploadId,
+                                         @RequestParam long offset,
+                                         HttpServletRequest request,
+                                         @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal principal) {
+        UploadSession session;
+        try {
+            session = chunkedUploadService.getSession(uploadId);
+        } catch (RuntimeException e) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
+        }
+        if (!ownsUpload(session, principal)) {
+            return uploadForbidden();
+        }
+
+        try (InputStream body = request.getInputStream()) {
+            long received = chunkedUploadService.appendChunk(session, offset, body);
+            return ResponseEntity.ok(chunkedUploadStatus(session, received));
+        } catch (RuntimeException e) {
+            // Trả về offset hiện tại để client gửi tiếp từ đúng vị trí
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", e.getMessage());
+            try {
+                errorResponse.put("offset", chunkedUploadService.getReceivedBytes(session));
+            } catch (IOException ignored) {
+            }
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(errorResponse);
+        } catch (IOException e) {
+            System.err.println("❌ Error writing chunk for " + uploadId + ": " + e.getMessage());
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Lỗi khi ghi chunk: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+        }
+    }
+
+    @PostMapping("/upload/sessions/{uploadId}/complete")
+    public ResponseEntity<?> completeChunkedUpload(@PathVariable String uploadId,
+                                                   @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal principal) {
+        try {
+            UploadSession session = chunkedUploadService.getSession(uploadId);
+            if (!ownsUpload(session, principal)) {
+                return uploadForbidden();
+            }
+            StoredFile storedFile = chunkedUploadService.completeUpload(session);
+
+            Map<String, String> response = new HashMap<>();
+            response.put("url", "/api/files/" + storedFile.getFilename());
+            response.put("filename", session.getOriginalFilename());
+            response.put("size", String.valueOf(session.getTotalSize()));
+            return ResponseEntity.ok(response);
+        } catch (RuntimeException e) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
+        } catch (IOException e) {
+            System.err.println("❌ Error completing chunked upload: " + e.getMessage());
+            e.printStackTrace();
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Lỗi khi hoàn tất upload: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+        }
+    }
+
+    // Dọn file không còn được tham chiếu; mặc định chỉ báo cáo (dryRun=true), không xóa. Chỉ Admin được gọi
+    @PostMapping("/gc")
+    public ResponseEntity<?> collectOrphanFiles(@RequestParam(defaultValue = "true") boolean dryRun,
+                                                @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal principal) {
+        if (principal == null || !principal.isAdmin()) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Chỉ quản trị viên mới được dọn file!");
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(errorResponse);
+        }
+        try {
+            return ResponseEntity.ok(orphanFileCollector.collect(dryRun));
+        } catch (RuntimeException e) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(errorResponse);
+        }
+    }
+
+    // Ảnh thu nhỏ (ảnh) hoặc trang đầu (PDF) để hiển thị trong bảng tin thay vì tải file gốc
+    @GetMapping("/{filename}/preview")
+    public ResponseEntity<?> getPreview(@PathVariable String filename, @RequestHeader HttpHeaders requestHeaders) {
+        try {
+            Optional<StoredFile> storedFileOpt = fileStorageService.findStoredFile(filename);
+            if (storedFileOpt.isEmpty() || !previewService.isPreviewable(storedFileOpt.get())
+                    || previewService.isPreviewFailed(storedFileOpt.get())) {
                 Map<String, String> errorResponse = new HashMap<>();
-                errorResponse.put("error", "File không tồn tại!");
+                errorResponse.put("error", "File không có bản xem trước!");
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
             }
 
+            StoredFile storedFile = storedFileOpt.get();
+            OptionalLong previewSize = previewService.findPreviewSize(storedFile);
+            if (previewSize.isEmpty()) {
+                // Đang tạo nền, client thử lại sau
+                Map<String, String> response = new HashMap<>();
+                response.put("status", "processing");
+                return ResponseEntity.status(HttpStatus.ACCEPTED)
+                        .header(HttpHeaders.RETRY_AFTER, "2")
+                        .body(response);
+            }
+
+            String previewKey = previewService.previewKey(storedFile.getSha256());
+            long lastModified = storedFile.getCreatedAt()
+                    .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            return fileDownloadService.serve(
+                    (offset, length, out) -> out.write(hotFileCache.get(previewKey), (int) offset, (int) length),
+                    previewSize.getAsLong(), lastModified, "\"" + previewKey + "\"", IMMUTABLE,
+                    PreviewService.PREVIEW_CONTENT_TYPE, filename + ".preview.jpg", requestHeaders);
+        } catch (IOException e) {
+            System.err.println("❌ Error reading preview: " + e.getMessage());
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Lỗi khi đọc bản xem trước: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+        }
+    }
+
+    @GetMapping("/{filename:.+}")
+    public ResponseEntity<?> getFile(@PathVariable String filename, @RequestHeader HttpHeaders requestHeaders) {
+        try {
+            // File trong kho nội dung: ETag chính là SHA-256 nên có thể cache vĩnh viễn
+            Optional<StoredFile> storedFileOpt = fileStorageService.findStoredFile(filename);
+            if (storedFileOpt.isPresent()) {
+                StoredFile storedFile = storedFileOpt.get();
+                String blobKey = storedFile.getSha256();
+                // Kích thước và content type lấy từ bảng files; chỉ hỏi kho blob với bản ghi cũ chưa có metadata
+                long size;
+                if (storedFile.getSize() != null) {
+                    size = storedFile.getSize();
+                } else {
+                    OptionalLong blobSize = blobStorage.size(blobKey);
+                    if (blobSize.isEmpty()) {
+                        Map<String, String> errorResponse = new HashMap<>();
+                        errorResponse.put("error", "File không tồn tại!");
+                        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
+                    }
+                    size = blobSize.getAsLong();
+                }
+                String contentType = storedFile.getContentType() != null
+                        ? storedFile.getContentType()
+                        : MediaTypeFactory.getMediaType(filename)
+                                .map(MediaType::toString)
+                                .orElse("application/octet-stream");
+                long lastModified = storedFile.getCreatedAt()
+                        .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+                // File dạng text: gửi bản gzip đã nén sẵn nếu client chấp nhận
+                String contentKey = blobKey;
+                String etag = "\"" + blobKey + "\"";
+                HttpHeaders responseHeaders = new HttpHeaders();
+                if (compressedVariantService.isCompressible(storedFile)) {
+                    responseHeaders.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+                    if (compressedVariantService.acceptsGzip(requestHeaders)) {
+                        OptionalLong gzipSize = compressedVariantService.findGzipSize(storedFile);
+                        if (gzipSize.isPresent()) {
+                            contentKey = compressedVariantService.gzipKey(blobKey);
+                            size = gzipSize.getAsLong();
+                            etag = "\"" + blobKey + "-gzip\"";
+                            responseHeaders.add(HttpHeaders.CONTENT_ENCODING, "gzip");
+                        }
+                    }
+                }
+
+                // File nhỏ/vừa phục vụ từ bộ nhớ, file lớn stream thẳng từ kho blob
+                String servedKey = contentKey;
+                FileDownloadService.RangeWriter content;
+                if (hotFileCache.isCacheable(size)) {
+                    content = (offset, length, out) -> out.write(hotFileCache.get(servedKey), (int) offset, (int) length);
+                } else {
+                    content = (offset, length, out) -> blobStorage.copyTo(servedKey, offset, length, out);
+                }
+                return fileDownloadService.serve(content, size, lastModified, etag, IMMUTABLE,
+                        contentType, filename, requestHeaders, responseHeaders);
+            }
+
+            // File cũ (trước khi có kho nội dung) nằm trực tiếp trong thư mục upload
+            Path uploadPath = fileStorageService.getUploadPath();
+            Path filePath = uploadPath.resolve(filename).normalize();
+
             // Kiểm tra file có nằm trong thư mục upload không (security)
-            Path uploadPath = Paths.get(uploadDir).normalize();
             if (!filePath.startsWith(uploadPath)) {
                 Map<String, String> errorResponse = new HashMap<>();
                 errorResponse.put("error", "Truy cập file không hợp lệ!");
                 return ResponseEntity.status(HttpStatus.FORBIDDEN).body(errorResponse);
             }
 
-            // Trả về file
-            byte[] fileContent = Files.readAllBytes(filePath);
+            // Đọc thuộc tính file một lần (thay cho exists + readAllBytes)
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(filePath, BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                attributes = null;
+            }
+
+            // Kiểm tra file có tồn tại không
+            if (attributes == null || !attributes.isRegularFile()) {
+                Map<String, String> errorResponse = new HashMap<>();
+                errorResponse.put("error", "File không tồn tại!");
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
+            }
+
             String contentType = Files.probeContentType(filePath);
             if (contentType == null) {
                 contentType = "application/octet-stream";
             }
 
-            return ResponseEntity.ok()
-                    .header("Content-Type", contentType)
-                    .header("Content-Disposition", "inline; filename=\"" + filename + "\"")
-                    .body(fileContent);
+            // Stream file (hỗ trợ Range, ETag, Last-Modified)
+            long lastModified = attributes.lastModifiedTime().toMillis();
+            return fileDownloadService.serve(fileDownloadService.fileContent(filePath), attributes.size(), lastModified,
+                    fileDownloadService.buildETag(attributes.size(), lastModified), CacheControl.empty(),
+                    contentType, filename, requestHeaders);
         } catch (IOException e) {
             System.err.println("❌ Error reading file: " + e.getMessage());
             Map<String, String> errorResponse = new HashMap<>();
@@ -106,6 +362,30 @@ public class FileController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
         }
     }
-}
 
+    private Map<String, Object> chunkedUploadStatus(UploadSession session, long received) {
+        Map<String, Object> status = new HashMap<>();
+        status.put("uploadId", session.getUploadId());
+        status.put("filename", session.getOriginalFilename());
+        status.put("size", session.getTotalSize());
+        status.put("offset", received);
+        return status;
+    }
 
+    // Người upload là người gọi đã xác thực; upload không kèm token vẫn được chấp nhận như trước
+    private Integer uploaderId(AuthPrincipal principal) {
+        return principal != null ? principal.getUserId() : null;
+    }
+
+    // Phiên upload của người dùng đã xác thực chỉ người đó được xem / ghi tiếp / hoàn tất
+    private boolean ownsUpload(UploadSession session, AuthPrincipal principal) {
+        return session.getUploaderId() == null
+                || (principal != null && session.getUploaderId().equals(principal.getUserId()));
+    }
+
+    private ResponseEntity<Map<String, String>> uploadForbidden() {
+        Map<String, String> errorResponse = new HashMap<>();
+        errorResponse.put("error", "Không có quyền truy cập phiên upload này!");
+        return ResponseEntity.status(HttpStatus.FORBIDDEN).body(errorResponse);
+    }
+}
@@ -1,11 +1,17 @@
 package com.hust.classroom.controller;
 
 import com.hust.classroom.entity.Submission;
+import com.hust.classroom.security.AuthPrincipal;
+import com.hust.classroom.service.SubmissionDedupeService;
+import com.hust.classroom.service.SubmissionExportService;
 import com.hust.classroom.service.SubmissionService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.math.BigDecimal;
 import java.util.List;
@@ -18,13 +24,22 @@ import java.util.Map;
 public class GradingController {
     
     private final SubmissionService submissionService;
+    private final SubmissionExportService submissionExportService;
+    private final SubmissionDedupeService submissionDedupeService;
     
     @GetMapping
     public ResponseEntity<?> getSubmissions(
             @RequestParam(required = false) Integer teacherId,
             @RequestParam(required = false) Integer studentId,
-            @RequestParam(required = false) Integer classId) {
+            @RequestParam(required = false) Integer classId,
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal principal) {
         try {
+            // Sinh viên chỉ xem bài của mình, giáo viên xem bài trong lớp mình dạy
+            if (principal != null && principal.isStudent()) {
+                studentId = principal.getUserId();
+            } else if (principal != null && principal.isTeacher() && studentId == null) {
+                teacherId = principal.getUserId();
+            }
             List<Submission> submissions;
             if (studentId != null) {
                 // Lấy submissions của student
@@ -50,7 +65,9 @@ public class GradingController {
     }
     
     @PostMapping
-    public ResponseEntity<?> createSubmission(@RequestBody Map<String, Object> request) {
+    public ResponseEntity<?> createSubmission(@RequestBody Map<String, Object> request,
+                                              @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+                                              @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal principal) {
         try {
             Submission submission = new Submission();
             // Map fields from request
@@ -63,6 +80,13 @@ public class GradingController {
                     : Integer.parseInt(studentIdObj.toString());
                 submission.setStudentID(studentId);
             }
+            // Sinh viên đã xác thực chỉ nộp bài cho chính mình: lấy ID từ token, không tin studentID trong body
+            if (principal != null && principal.isStudent()) {
+                if (submission.getStudentID() != null && !submission.getStudentID().equals(principal.getUserId())) {
+                    return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Không thể nộp bài thay sinh viên khác!");
+                }
+                submission.setStudentID(principal.getUserId());
+            }
             if (classIdObj != null) {
                 Integer classId = classIdObj instanceof Number 
                     ? ((Number) classIdObj).intValue() 
@@ -76,7 +100,7 @@ public class GradingController {
                 submission.setFilePath((String) request.get("filePath"));
             }
             
-            Submission created = submissionService.createSubmission(submission);
+            Submission created = submissionService.createSubmission(submission, idempotencyKey);
             return ResponseEntity.ok(created);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Lỗi: " + e.getMessage());
@@ -110,7 +134,7 @@ public class GradingController {
     @DeleteMapping("/cleanup-duplicates")
     public ResponseEntity<?> cleanupDuplicateSubmissions() {
         try {
-            int deletedCount = submissionService.removeDuplicateSubmissions();
+            int deletedCount = submissionDedupeService.removeDuplicates();
             Map<String, Object> response = new java.util.HashMap<>();
             response.put("message", "Đã xóa " + deletedCount + " bài nộp trùng lặp.");
             response.put("deletedCount", deletedCount);
@@ -122,5 +146,29 @@ public class GradingController {
                     .body("Lỗi khi xóa bài nộp trùng lặp: " + e.getMessage());
         }
     }
+    
+    // Tải toàn bộ bài nộp của lớp (hoặc của một bài tập) thành một file ZIP, đặt tên theo MSSV
+    @GetMapping("/export")
+    public ResponseEntity<?> exportSubmissions(
+            @RequestParam Integer classId,
+            @RequestParam(required = false) String tenBaiTap,
+            @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal principal) {
+        if (!submissionExportService.canExport(principal, classId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body("Chỉ quản trị viên hoặc giáo viên của lớp mới được tải bài nộp!");
+        }
+        try {
+            List<SubmissionExportService.ExportEntry> entries = submissionExportService.prepareExport(classId, tenBaiTap);
+            StreamingResponseBody body = outputStream -> submissionExportService.writeZip(entries, outputStream);
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType("application/zip"))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"class-" + classId + ".zip\"")
+                    .body(body);
+        } catch (Exception e) {
+            System.err.println("❌ Error exporting submissions: " + e.getMessage());
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Lỗi khi xuất bài nộp: " + e.getMessage());
+        }
+    }
 }
-
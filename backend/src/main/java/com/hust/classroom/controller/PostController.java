@@ -1,6 +1,7 @@
 package com.hust.classroom.controller;
 
 import com.hust.classroom.entity.Post;
+import com.hust.classroom.security.AuthPrincipal;
 import com.hust.classroom.service.PostService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
@@ -32,12 +33,13 @@ public class PostController {
     }
     
     @PostMapping
-    public ResponseEntity<?> createPost(@RequestBody Map<String, Object> request) {
+    public ResponseEntity<?> createPost(@RequestBody Map<String, Object> request,
+                                        @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false) AuthPrincipal principal) {
         try {
             System.out.println("🔵 [Controller] createPost called with: " + request);
             
             Object classIdObj = request.get("classId");
-            Object authorIdObj = request.get("authorId");
+            Object authorIdObj = principal != null ? principal.getUserId() : request.get("authorId");
             Integer classId;
             Integer authorId;
             
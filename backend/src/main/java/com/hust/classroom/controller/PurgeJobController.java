@@ -0,0 +1,31 @@
+package com.hust.classroom.controller;
+
+import com.hust.classroom.service.PurgeService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Tiến độ xóa nền lớp học / người dùng (DELETE ...?async=true)
+@RestController
+@RequestMapping("/api/purge-jobs")
+@RequiredArgsConstructor
+@CrossOrigin(origins = {"http://localhost:3000", "http://localhost:5173", "http://localhost:5174"})
+public class PurgeJobController {
+    
+    private final PurgeService purgeService;
+    
+    @GetMapping("/{jobId}")
+    public ResponseEntity<?> getJob(@PathVariable String jobId) {
+        return purgeService.getJob(jobId)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> {
+                    Map<String, String> errorResponse = new HashMap<>();
+                    errorResponse.put("error", "Không tìm thấy tiến trình xóa!");
+                    return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
+                });
+    }
+}
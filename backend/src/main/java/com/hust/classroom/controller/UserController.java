@@ -1,6 +1,7 @@
 package com.hust.classroom.controller;
 
 import com.hust.classroom.entity.User;
+import com.hust.classroom.service.PurgeService;
 import com.hust.classroom.service.UserService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
@@ -19,6 +20,7 @@ import java.util.Optional;
 public class UserController {
     
     private final UserService userService;
+    private final PurgeService purgeService;
     
     @GetMapping
     public ResponseEntity<List<User>> getAllUsers() {
@@ -97,8 +99,14 @@ public class UserController {
     }
     
     @DeleteMapping("/{id}")
-    public ResponseEntity<?> deleteUser(@PathVariable Integer id) {
+    public ResponseEntity<?> deleteUser(@PathVariable Integer id,
+                                        @RequestParam(required = false, defaultValue = "false") boolean async) {
         try {
+            // async=true: xóa nền theo từng đợt, trả về jobId để theo dõi tiến độ (GET /api/purge-jobs/{jobId})
+            if (async) {
+                return ResponseEntity.status(HttpStatus.ACCEPTED).body(purgeService.purgeUser(id));
+            }
+            
             userService.deleteUser(id);
             Map<String, String> successResponse = new HashMap<>();
             successResponse.put("message", "Đã xóa người dùng thành công!");
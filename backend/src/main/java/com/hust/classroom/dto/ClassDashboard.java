@@ -0,0 +1,36 @@
+package com.hust.classroom.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// Số liệu tổng quan của một lớp cho trang chi tiết lớp (thay cho việc tải đủ các danh sách chỉ để đếm)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClassDashboard {
+    private Integer classId;
+    private String tenLop;
+    private long studentCount;
+    private long assignmentCount;
+    private long materialCount;
+    private long pendingSubmissionCount;
+    private long gradedSubmissionCount;
+    private List<RecentPost> recentPosts = new ArrayList<>();
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RecentPost {
+        private Integer postID;
+        private String content;
+        private String filePath;
+        private LocalDateTime createdAt;
+        private Integer authorID;
+        private String authorName;
+    }
+}
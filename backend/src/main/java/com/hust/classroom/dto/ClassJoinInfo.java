@@ -0,0 +1,17 @@
+package com.hust.classroom.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Thông tin tối thiểu của lớp khi tham gia bằng mã (được cache theo mã tham gia)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClassJoinInfo {
+    private Integer classID;
+    private String tenLop;
+    private String moTa;
+    private String maThamGia;
+    private Integer giaoVienID;
+}
@@ -0,0 +1,18 @@
+package com.hust.classroom.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Một lớp trong danh sách lớp; chỉ tên giáo viên thay vì cả entity User
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClassListItem {
+    private Integer classID;
+    private String tenLop;
+    private String moTa;
+    private String maThamGia;
+    private Integer giaoVienID;
+    private String giaoVienName;
+}
@@ -0,0 +1,40 @@
+package com.hust.classroom.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+// Một trang kết quả phân trang theo con trỏ (keyset): gửi lại nextCursor để lấy trang kế tiếp
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+    private List<T> items;
+    private String nextCursor;
+    private boolean hasMore;
+    
+    private static final String SEPARATOR = "\u0000";
+    
+    // Con trỏ là các giá trị khóa sắp xếp của dòng cuối trang, mã hóa base64 để client coi như chuỗi mờ
+    public static String encodeCursor(String... values) {
+        String joined = String.join(SEPARATOR, values);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(joined.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    public static String[] decodeCursor(String cursor, int expectedParts) {
+        try {
+            String joined = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] values = joined.split(SEPARATOR, -1);
+            if (values.length == expectedParts) {
+                return values;
+            }
+        } catch (IllegalArgumentException e) {
+            // Chuỗi base64 hỏng, báo lỗi chung bên dưới
+        }
+        throw new IllegalArgumentException("Cursor không hợp lệ!");
+    }
+}
@@ -0,0 +1,19 @@
+package com.hust.classroom.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.sql.Timestamp;
+
+// Một sinh viên trong danh sách lớp; chỉ các cột cần hiển thị (không có password, avatar...)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RosterEntry {
+    private Integer id;
+    private String name;
+    private String email;
+    private String mssv;
+    private Timestamp enrolledAt;
+}
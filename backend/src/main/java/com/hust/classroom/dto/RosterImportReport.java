@@ -0,0 +1,39 @@
+package com.hust.classroom.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Kết quả import danh sách sinh viên từ CSV, mỗi dòng một kết quả
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RosterImportReport {
+    private Integer classId;
+    private int total;
+    private int added;
+    private int alreadyEnrolled;
+    private int duplicate;
+    private int notFound;
+    private int invalid;
+    private List<RowResult> rows = new ArrayList<>();
+    
+    public enum Status {
+        ADDED, ALREADY_ENROLLED, DUPLICATE, NOT_FOUND, INVALID
+    }
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RowResult {
+        private int line;
+        private String email;
+        private String mssv;
+        private Integer studentId;
+        private Status status;
+        private String message;
+    }
+}
@@ -0,0 +1,15 @@
+package com.hust.classroom.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Chỉ các cột cần để đối chiếu danh sách sinh viên, không nạp cả entity User
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StudentLookup {
+    private Integer id;
+    private String email;
+    private String mssv;
+}
@@ -0,0 +1,40 @@
+package com.hust.classroom.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "refresh_tokens")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RefreshToken {
+    @Id
+    @Column(name = "token_hash", length = 64)
+    private String tokenHash; // SHA-256 của refresh token, không lưu token gốc
+
+    @Column(name = "user_id", nullable = false)
+    private Integer userId;
+
+    @Column(name = "access_token_id", length = 36, nullable = false)
+    private String accessTokenId; // jti của access token cấp cùng lúc
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Column(name = "access_expires_at", nullable = false)
+    private LocalDateTime accessExpiresAt;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "revoked_at")
+    private LocalDateTime revokedAt;
+
+    @Column(name = "replaced_by", length = 64)
+    private String replacedBy; // Token mới sau khi rotate
+}
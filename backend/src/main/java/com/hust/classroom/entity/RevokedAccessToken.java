@@ -0,0 +1,24 @@
+package com.hust.classroom.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// jti của access token bị thu hồi khi đăng xuất mà không gắn với refresh token nào đang bị thu hồi
+// (ví dụ đăng xuất chỉ có access token); giữ tới khi access token hết hạn
+@Entity
+@Table(name = "revoked_access_tokens")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RevokedAccessToken {
+    @Id
+    @Column(name = "token_id", length = 36)
+    private String tokenId;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,37 @@
+package com.hust.classroom.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "files")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoredFile {
+    @Id
+    @Column(name = "filename")
+    private String filename; // Tên công khai trong URL /api/files/{filename}
+
+    @Column(name = "sha256", length = 64, nullable = false)
+    private String sha256;
+
+    @Column(name = "original_name")
+    private String originalName;
+
+    @Column(name = "content_type")
+    private String contentType;
+
+    @Column(name = "size")
+    private Long size;
+
+    @Column(name = "uploader_id")
+    private Integer uploaderId; // null nếu upload không kèm token
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+}
@@ -11,7 +11,11 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "submissions")
+// Mỗi sinh viên chỉ có một bài nộp cho mỗi bài tập của lớp (xem SubmissionDedupeService cho dữ liệu cũ)
+@Table(name = "submissions", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_submissions_student_class_bai_tap", columnNames = {"student_id", "class_id", "ten_bai_tap"}),
+    @UniqueConstraint(name = "uk_submissions_student_idempotency_key", columnNames = {"student_id", "idempotency_key"})
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -57,6 +61,11 @@ public class Submission {
 
     @Column(name = "graded_at")
     private LocalDateTime gradedAt;
+
+    // Khóa client gửi kèm (header Idempotency-Key) để request gửi lại nhận về đúng bài nộp này
+    @Column(name = "idempotency_key", length = 100)
+    @JsonIgnore
+    private String idempotencyKey;
 }
 
 
@@ -0,0 +1,12 @@
+package com.hust.classroom.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// Phát ra khi một blob không còn được tham chiếu và đã bị xóa khỏi kho;
+// các bản phái sinh (gzip, preview...) của blob cũng cần được dọn
+@Data
+@AllArgsConstructor
+public class BlobDeletedEvent {
+    private String sha256;
+}
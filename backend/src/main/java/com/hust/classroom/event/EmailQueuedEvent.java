@@ -0,0 +1,12 @@
+package com.hust.classroom.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// Phát ra khi có email mới vào outbox; dispatcher gửi ngay sau khi transaction commit
+// thay vì chờ tới lần quét định kỳ
+@Data
+@AllArgsConstructor
+public class EmailQueuedEvent {
+    private Long outboxId;
+}
@@ -0,0 +1,12 @@
+package com.hust.classroom.event;
+
+import com.hust.classroom.entity.StoredFile;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// Phát ra khi một file mới được lưu vào kho nội dung; listener xử lý sau khi transaction commit
+@Data
+@AllArgsConstructor
+public class FileStoredEvent {
+    private StoredFile storedFile;
+}
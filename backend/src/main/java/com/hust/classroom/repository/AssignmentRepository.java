@@ -2,6 +2,7 @@ package com.hust.classroom.repository;
 
 import com.hust.classroom.entity.Assignment;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -15,7 +16,8 @@ public interface AssignmentRepository extends JpaRepository<Assignment, Integer>
     
     @Query("SELECT a FROM Assignment a LEFT JOIN FETCH a.lopHoc WHERE a.classID = :classId AND a.type = :type ORDER BY a.createdAt DESC")
     List<Assignment> findByClassIdAndType(@Param("classId") Integer classId, @Param("type") Assignment.Type type);
+    
+    @Modifying
+    @Query("DELETE FROM Assignment a WHERE a.classID = :classId")
+    int deleteByClassId(@Param("classId") Integer classId);
 }
-
-
-
@@ -2,6 +2,7 @@ package com.hust.classroom.repository;
 
 import com.hust.classroom.entity.Attendance;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -17,7 +18,8 @@ public interface AttendanceRepository extends JpaRepository<Attendance, Integer>
     
     @Query("SELECT a FROM Attendance a WHERE a.classID = :classId ORDER BY a.date DESC")
     List<Attendance> findAllByClassId(@Param("classId") Integer classId);
+    
+    @Modifying
+    @Query("DELETE FROM Attendance a WHERE a.classID = :classId")
+    int deleteByClassId(@Param("classId") Integer classId);
 }
-
-
-
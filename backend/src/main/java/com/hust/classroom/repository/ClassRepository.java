@@ -1,7 +1,9 @@
 package com.hust.classroom.repository;
 
+import com.hust.classroom.dto.ClassJoinInfo;
 import com.hust.classroom.entity.Class;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -13,10 +15,25 @@ import java.util.Optional;
 public interface ClassRepository extends JpaRepository<Class, Integer> {
     Optional<Class> findByMaThamGia(String maThamGia);
     
+    boolean existsByMaThamGia(String maThamGia);
+    
+    boolean existsByClassIDAndGiaoVienID(Integer classID, Integer giaoVienID);
+    
+    @Query("SELECT new com.hust.classroom.dto.ClassJoinInfo(c.classID, c.tenLop, c.moTa, c.maThamGia, c.giaoVienID) " +
+           "FROM Class c WHERE c.maThamGia = :maThamGia")
+    Optional<ClassJoinInfo> findJoinInfoByMaThamGia(@Param("maThamGia") String maThamGia);
+    
     @Query("SELECT DISTINCT c FROM Class c LEFT JOIN FETCH c.giaoVien WHERE c.giaoVien.id = :teacherId ORDER BY c.classID DESC")
     List<Class> findByGiaoVienId(@Param("teacherId") Integer teacherId);
     
     @Query("SELECT DISTINCT c FROM Class c LEFT JOIN FETCH c.giaoVien JOIN c.students cs WHERE cs.student.id = :studentId")
     List<Class> findByStudentId(@Param("studentId") Integer studentId);
+    
+    @Query("SELECT c.classID FROM Class c WHERE c.giaoVien.id = :teacherId")
+    List<Integer> findIdsByGiaoVienId(@Param("teacherId") Integer teacherId);
+    
+    // Xóa trực tiếp, không nạp entity và các collection cascade
+    @Modifying
+    @Query("DELETE FROM Class c WHERE c.classID = :classId")
+    int deleteByClassId(@Param("classId") Integer classId);
 }
-
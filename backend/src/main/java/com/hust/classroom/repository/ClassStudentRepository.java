@@ -2,10 +2,12 @@ package com.hust.classroom.repository;
 
 import com.hust.classroom.entity.ClassStudent;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,6 +22,20 @@ public interface ClassStudentRepository extends JpaRepository<ClassStudent, Inte
     @Query("SELECT cs FROM ClassStudent cs WHERE cs.classID = :classId AND cs.studentID = :studentId")
     Optional<ClassStudent> findByClassIdAndStudentId(@Param("classId") Integer classId, @Param("studentId") Integer studentId);
     
+    // Chỉ lấy email, dùng cho thông báo hàng loạt
+    @Query("SELECT u.email FROM ClassStudent cs JOIN cs.student u WHERE cs.classID = :classId AND u.email IS NOT NULL")
+    List<String> findStudentEmailsByClassId(@Param("classId") Integer classId);
+    
+    @Query("SELECT cs.studentID FROM ClassStudent cs WHERE cs.classID = :classId AND cs.studentID IN :studentIds")
+    List<Integer> findEnrolledStudentIds(@Param("classId") Integer classId, @Param("studentIds") Collection<Integer> studentIds);
+    
     boolean existsByClassIDAndStudentID(Integer classId, Integer studentId);
+    
+    @Modifying
+    @Query("DELETE FROM ClassStudent cs WHERE cs.classID = :classId")
+    int deleteByClassId(@Param("classId") Integer classId);
+    
+    @Modifying
+    @Query("DELETE FROM ClassStudent cs WHERE cs.studentID = :studentId")
+    int deleteByStudentId(@Param("studentId") Integer studentId);
 }
-
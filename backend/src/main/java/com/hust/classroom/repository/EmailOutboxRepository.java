@@ -0,0 +1,27 @@
+package com.hust.classroom.repository;
+
+import com.hust.classroom.entity.EmailOutbox;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface EmailOutboxRepository extends JpaRepository<EmailOutbox, Long> {
+    // Email đến hạn gửi, gồm cả email SENDING mà worker giữ quá hạn (ví dụ server bị tắt giữa chừng).
+    // SKIP LOCKED để nhiều instance cùng chạy không lấy trùng
+    @Query(value = "SELECT * FROM email_outbox WHERE status IN ('PENDING', 'SENDING') AND next_attempt_at <= :now " +
+                   "ORDER BY next_attempt_at LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<EmailOutbox> lockDue(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    @Query("SELECT COUNT(e) FROM EmailOutbox e WHERE e.status IN :statuses")
+    long countByStatuses(@Param("statuses") List<EmailOutbox.Status> statuses);
+
+    @Modifying
+    @Query("DELETE FROM EmailOutbox e WHERE e.status = com.hust.classroom.entity.EmailOutbox.Status.SENT AND e.sentAt < :before")
+    int deleteSentBefore(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,25 @@
+package com.hust.classroom.repository;
+
+import com.hust.classroom.entity.FileBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface FileBlobRepository extends JpaRepository<FileBlob, String> {
+    @Modifying
+    @Query(value = "INSERT INTO file_blobs (sha256, size, ref_count, created_at) VALUES (:sha256, :size, 1, NOW()) " +
+                   "ON CONFLICT (sha256) DO UPDATE SET ref_count = file_blobs.ref_count + 1", nativeQuery = true)
+    int acquire(@Param("sha256") String sha256, @Param("size") Long size);
+
+    @Modifying
+    @Query(value = "UPDATE file_blobs SET ref_count = ref_count - 1 WHERE sha256 = :sha256", nativeQuery = true)
+    int release(@Param("sha256") String sha256);
+
+    // Trả về 1 nếu blob không còn ai tham chiếu và đã bị xóa khỏi bảng
+    @Modifying
+    @Query(value = "DELETE FROM file_blobs WHERE sha256 = :sha256 AND ref_count <= 0", nativeQuery = true)
+    int deleteIfUnreferenced(@Param("sha256") String sha256);
+}
@@ -2,6 +2,7 @@ package com.hust.classroom.repository;
 
 import com.hust.classroom.entity.Notification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -15,7 +16,8 @@ public interface NotificationRepository extends JpaRepository<Notification, Inte
     
     @Query("SELECT n FROM Notification n WHERE n.userID = :userId AND n.read = false ORDER BY n.createdAt DESC")
     List<Notification> findUnreadByUserId(@Param("userId") Integer userId);
+    
+    @Modifying
+    @Query("DELETE FROM Notification n WHERE n.userID = :userId")
+    int deleteByUserId(@Param("userId") Integer userId);
 }
-
-
-
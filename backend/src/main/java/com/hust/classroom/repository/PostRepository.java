@@ -2,6 +2,7 @@ package com.hust.classroom.repository;
 
 import com.hust.classroom.entity.Post;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -12,7 +13,12 @@ import java.util.List;
 public interface PostRepository extends JpaRepository<Post, Integer> {
     @Query("SELECT p FROM Post p LEFT JOIN FETCH p.author WHERE p.classID = :classId ORDER BY p.createdAt DESC")
     List<Post> findByClassId(@Param("classId") Integer classId);
+    
+    @Modifying
+    @Query("DELETE FROM Post p WHERE p.classID = :classId")
+    int deleteByClassId(@Param("classId") Integer classId);
+    
+    @Modifying
+    @Query("DELETE FROM Post p WHERE p.authorID = :authorId")
+    int deleteByAuthorId(@Param("authorId") Integer authorId);
 }
-
-
-
@@ -0,0 +1,40 @@
+package com.hust.classroom.repository;
+
+import com.hust.classroom.entity.RefreshToken;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, String> {
+    // jti của các access token đã bị thu hồi nhưng chưa hết hạn (nạp lại danh sách thu hồi khi khởi động).
+    // Token bị xoay vòng (replacedBy khác null) không thu hồi access token đi kèm: nó tự hết hạn sau vài phút,
+    // giống như lúc refresh (RefreshTokenService.refresh không thu hồi jti cũ)
+    @Query("SELECT r.accessTokenId FROM RefreshToken r " +
+           "WHERE r.revokedAt IS NOT NULL AND r.replacedBy IS NULL AND r.accessExpiresAt > :now")
+    List<String> findRevokedAccessTokenIds(@Param("now") LocalDateTime now);
+
+    // SELECT ... FOR UPDATE: hai request refresh cùng token chạy lần lượt, request sau thấy token đã xoay vòng
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM RefreshToken r WHERE r.tokenHash = :tokenHash")
+    Optional<RefreshToken> findByIdForUpdate(@Param("tokenHash") String tokenHash);
+
+    @Query("SELECT r FROM RefreshToken r WHERE r.userId = :userId AND r.revokedAt IS NULL")
+    List<RefreshToken> findActiveByUserId(@Param("userId") Integer userId);
+
+    @Modifying
+    @Query("DELETE FROM RefreshToken r WHERE r.expiresAt < :before")
+    int deleteExpiredBefore(@Param("before") LocalDateTime before);
+
+    @Modifying
+    @Query("DELETE FROM RefreshToken r WHERE r.userId = :userId")
+    int deleteByUserId(@Param("userId") Integer userId);
+}
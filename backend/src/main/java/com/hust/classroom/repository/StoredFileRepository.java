@@ -0,0 +1,28 @@
+package com.hust.classroom.repository;
+
+import com.hust.classroom.entity.StoredFile;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface StoredFileRepository extends JpaRepository<StoredFile, String> {
+    // Phân trang theo khóa (filename > after) để không phải đếm/offset trên bảng lớn
+    @Query("SELECT f FROM StoredFile f WHERE f.filename > :after AND f.createdAt < :before ORDER BY f.filename")
+    List<StoredFile> findPageCreatedBefore(@Param("after") String after,
+                                           @Param("before") LocalDateTime before,
+                                           Pageable pageable);
+
+    // Những URL trong danh sách còn được bài nộp, bài tập, bài đăng hoặc avatar tham chiếu
+    @Query(value = "SELECT file_path FROM submissions WHERE file_path IN (:paths) " +
+                   "UNION SELECT file_path FROM assignments WHERE file_path IN (:paths) " +
+                   "UNION SELECT file_path FROM posts WHERE file_path IN (:paths) " +
+                   "UNION SELECT avatar FROM users WHERE avatar IN (:paths)", nativeQuery = true)
+    List<String> findReferencedPaths(@Param("paths") Collection<String> paths);
+}
@@ -2,6 +2,7 @@ package com.hust.classroom.repository;
 
 import com.hust.classroom.entity.Submission;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -10,7 +11,7 @@ import java.util.List;
 
 @Repository
 public interface SubmissionRepository extends JpaRepository<Submission, Integer> {
-    @Query("SELECT s FROM Submission s WHERE s.lopHocID = :classId")
+    @Query("SELECT s FROM Submission s LEFT JOIN FETCH s.student WHERE s.lopHocID = :classId")
     List<Submission> findByClassId(@Param("classId") Integer classId);
     
     @Query("SELECT DISTINCT s FROM Submission s " +
@@ -41,11 +42,11 @@ public interface SubmissionRepository extends JpaRepository<Submission, Integer>
            "WHERE s.lopHoc.giaoVien.id = :teacherId AND s.lopHocID = :classId")
     List<Submission> findByTeacherIdAndClassId(@Param("teacherId") Integer teacherId, @Param("classId") Integer classId);
     
-    @Query("SELECT s FROM Submission s WHERE s.studentID = :studentId AND s.lopHocID = :classId AND s.tenBaiTap = :tenBaiTap")
-    List<Submission> findByStudentIdAndClassIdAndTenBaiTap(
-        @Param("studentId") Integer studentId, 
-        @Param("classId") Integer classId, 
-        @Param("tenBaiTap") String tenBaiTap
-    );
+    @Modifying
+    @Query("DELETE FROM Submission s WHERE s.lopHocID = :classId")
+    int deleteByClassId(@Param("classId") Integer classId);
+    
+    @Modifying
+    @Query("DELETE FROM Submission s WHERE s.studentID = :studentId")
+    int deleteByStudentId(@Param("studentId") Integer studentId);
 }
-
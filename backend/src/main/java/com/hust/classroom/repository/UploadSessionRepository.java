@@ -0,0 +1,16 @@
+package com.hust.classroom.repository;
+
+import com.hust.classroom.entity.UploadSession;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+    @Query("SELECT u FROM UploadSession u WHERE u.createdAt < :before")
+    List<UploadSession> findCreatedBefore(@Param("before") LocalDateTime before);
+}
@@ -1,9 +1,15 @@
 package com.hust.classroom.repository;
 
+import com.hust.classroom.dto.StudentLookup;
 import com.hust.classroom.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -12,7 +18,16 @@ public interface UserRepository extends JpaRepository<User, Integer> {
     Optional<User> findByMssv(String mssv);
     boolean existsByEmail(String email);
     boolean existsByMssv(String mssv);
+    
+    // emails phải đã được chuyển về chữ thường (so khớp không phân biệt hoa thường, dùng index LOWER(email))
+    @Query("SELECT new com.hust.classroom.dto.StudentLookup(u.id, u.email, u.mssv) FROM User u WHERE LOWER(u.email) IN :emails")
+    List<StudentLookup> findLookupsByEmailIn(@Param("emails") Collection<String> emails);
+    
+    @Query("SELECT new com.hust.classroom.dto.StudentLookup(u.id, u.email, u.mssv) FROM User u WHERE u.mssv IN :mssvs")
+    List<StudentLookup> findLookupsByMssvIn(@Param("mssvs") Collection<String> mssvs);
+    
+    // Xóa trực tiếp, không nạp entity và các collection cascade
+    @Modifying
+    @Query("DELETE FROM User u WHERE u.id = :userId")
+    int deleteByUserId(@Param("userId") Integer userId);
 }
-
-
-
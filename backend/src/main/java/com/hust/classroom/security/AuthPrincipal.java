@@ -0,0 +1,31 @@
+package com.hust.classroom.security;
+
+import com.hust.classroom.entity.User;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+// Người gọi request hiện tại, đã xác thực từ bearer token.
+// Controller lấy qua @RequestAttribute(name = AuthPrincipal.REQUEST_ATTRIBUTE, required = false)
+@Getter
+@ToString
+@AllArgsConstructor
+public final class AuthPrincipal {
+    public static final String REQUEST_ATTRIBUTE = "authPrincipal";
+
+    private final Integer userId;
+    private final String email;
+    private final User.Role role;
+
+    public boolean isAdmin() {
+        return role == User.Role.Admin;
+    }
+
+    public boolean isTeacher() {
+        return role == User.Role.Teacher;
+    }
+
+    public boolean isStudent() {
+        return role == User.Role.Student;
+    }
+}
@@ -0,0 +1,53 @@
+package com.hust.classroom.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hust.classroom.config.TokenPrincipal;
+import com.hust.classroom.entity.User;
+import com.hust.classroom.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Optional;
+
+@Service
+@RequiredArgsConstructor
+public class AuthPrincipalService {
+
+    private final UserRepository userRepository;
+
+    // userId -> principal; giữ ngắn để thay đổi role có hiệu lực nhanh, và bị xóa ngay khi user bị sửa / xóa
+    private final Cache<Integer, AuthPrincipal> principals = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(Duration.ofMinutes(1))
+            .build();
+
+    // Trả về rỗng nếu user trong token không còn tồn tại
+    public Optional<AuthPrincipal> resolve(TokenPrincipal token) {
+        Integer userId = token.getUserId();
+        if (userId == null) {
+            return Optional.empty();
+        }
+        AuthPrincipal cached = principals.getIfPresent(userId);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        Optional<User> userOpt = userRepository.findById(userId);
+        if (userOpt.isEmpty()) {
+            return Optional.empty();
+        }
+        User user = userOpt.get();
+        AuthPrincipal principal = new AuthPrincipal(user.getId(), user.getEmail(), user.getRole());
+        principals.put(userId, principal);
+        return Optional.of(principal);
+    }
+
+    // Gọi khi user đổi role hoặc bị xóa
+    public void evict(Integer userId) {
+        if (userId != null) {
+            principals.invalidate(userId);
+        }
+    }
+}
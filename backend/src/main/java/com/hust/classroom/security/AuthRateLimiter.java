@@ -0,0 +1,109 @@
+package com.hust.classroom.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Giới hạn tần suất đăng nhập / quên mật khẩu theo IP và theo email, chạy trong tiến trình.
+// Mỗi khóa là một token bucket dạng GCRA: cả trạng thái nằm trong một AtomicLong (thời điểm "đầy lại"),
+// cập nhật bằng CAS nên không khóa. Bucket nằm trong Caffeine (bảng băm phân đoạn) có giới hạn số khóa
+// và tự bỏ bucket không dùng, nên script dò mật khẩu với hàng triệu email khác nhau không làm tràn bộ nhớ
+@Component
+public class AuthRateLimiter {
+
+    public enum Action { LOGIN, FORGOT_PASSWORD }
+
+    private final Cache<String, AtomicLong> buckets;
+    private final Map<Action, Limit> ipLimits = new EnumMap<>(Action.class);
+    private final Map<Action, Limit> emailLimits = new EnumMap<>(Action.class);
+    private final Map<Action, Counter> allowedCounters = new EnumMap<>(Action.class);
+    private final Map<Action, Counter> throttledCounters = new EnumMap<>(Action.class);
+
+    // Mỗi token được nạp lại sau intervalNanos, tối đa burst token
+    private static final class Limit {
+        private final long intervalNanos;
+        private final long toleranceNanos;
+
+        private Limit(int permitsPerMinute, int burst) {
+            this.intervalNanos = Duration.ofMinutes(1).toNanos() / Math.max(1, permitsPerMinute);
+            this.toleranceNanos = intervalNanos * Math.max(1, burst);
+        }
+    }
+
+    public AuthRateLimiter(MeterRegistry meterRegistry,
+                           @Value("${auth.rate-limit.max-keys:100000}") long maxKeys,
+                           @Value("${auth.rate-limit.idle-minutes:30}") long idleMinutes,
+                           @Value("${auth.rate-limit.login.ip-per-minute:30}") int loginIpPerMinute,
+                           @Value("${auth.rate-limit.login.ip-burst:20}") int loginIpBurst,
+                           @Value("${auth.rate-limit.login.email-per-minute:5}") int loginEmailPerMinute,
+                           @Value("${auth.rate-limit.login.email-burst:5}") int loginEmailBurst,
+                           @Value("${auth.rate-limit.forgot-password.ip-per-minute:5}") int forgotIpPerMinute,
+                           @Value("${auth.rate-limit.forgot-password.ip-burst:5}") int forgotIpBurst,
+                           @Value("${auth.rate-limit.forgot-password.email-per-minute:1}") int forgotEmailPerMinute,
+                           @Value("${auth.rate-limit.forgot-password.email-burst:2}") int forgotEmailBurst) {
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(Duration.ofMinutes(idleMinutes))
+                .build();
+
+        ipLimits.put(Action.LOGIN, new Limit(loginIpPerMinute, loginIpBurst));
+        emailLimits.put(Action.LOGIN, new Limit(loginEmailPerMinute, loginEmailBurst));
+        ipLimits.put(Action.FORGOT_PASSWORD, new Limit(forgotIpPerMinute, forgotIpBurst));
+        emailLimits.put(Action.FORGOT_PASSWORD, new Limit(forgotEmailPerMinute, forgotEmailBurst));
+
+        for (Action action : Action.values()) {
+            String tag = action.name().toLowerCase(Locale.ROOT);
+            allowedCounters.put(action, Counter.builder("auth.rate_limit.requests")
+                    .tag("action", tag).tag("outcome", "allowed").register(meterRegistry));
+            throttledCounters.put(action, Counter.builder("auth.rate_limit.requests")
+                    .tag("action", tag).tag("outcome", "throttled").register(meterRegistry));
+        }
+        Gauge.builder("auth.rate_limit.buckets", buckets, Cache::estimatedSize).register(meterRegistry);
+    }
+
+    // 0 nếu được phép, ngược lại là số giây client nên chờ (dùng cho header Retry-After)
+    public long tryAcquire(Action action, String clientIp, String email) {
+        long now = System.nanoTime();
+        long waitNanos = 0;
+        if (clientIp != null) {
+            waitNanos = tryAcquire(action.name() + "|ip|" + clientIp, ipLimits.get(action), now);
+        }
+        if (waitNanos == 0 && email != null && !email.isBlank()) {
+            waitNanos = tryAcquire(action.name() + "|email|" + email.trim().toLowerCase(Locale.ROOT),
+                    emailLimits.get(action), now);
+        }
+
+        if (waitNanos == 0) {
+            allowedCounters.get(action).increment();
+            return 0;
+        }
+        throttledCounters.get(action).increment();
+        return Math.max(1, Duration.ofNanos(waitNanos).toSeconds() + 1);
+    }
+
+    private long tryAcquire(String key, Limit limit, long now) {
+        AtomicLong bucket = buckets.get(key, k -> new AtomicLong(now));
+        while (true) {
+            long theoreticalArrival = bucket.get();
+            long next = Math.max(theoreticalArrival, now) + limit.intervalNanos;
+            long waitNanos = next - now - limit.toleranceNanos;
+            if (waitNanos > 0) {
+                // Hết token: không trừ gì, request bị từ chối không kéo dài thời gian chờ
+                return waitNanos;
+            }
+            if (bucket.compareAndSet(theoreticalArrival, next)) {
+                return 0;
+            }
+        }
+    }
+}
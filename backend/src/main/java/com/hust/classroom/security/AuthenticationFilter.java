@@ -0,0 +1,74 @@
+package com.hust.classroom.security;
+
+import com.hust.classroom.config.JwtUtil;
+import com.hust.classroom.config.TokenPrincipal;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+// Xác thực bearer token một lần cho mỗi request và gắn AuthPrincipal vào request.
+// Request không có token vẫn đi tiếp như trước, chỉ không có principal. Token hết hạn / bị thu hồi / không hợp lệ
+// trả về 401 để client refresh rồi gửi lại, thay vì lặng lẽ chạy như người dùng ẩn danh (trừ /api/auth/*:
+// đăng nhập, refresh, đăng xuất vẫn phải chạy được với token cũ)
+@Component
+@RequiredArgsConstructor
+public class AuthenticationFilter extends OncePerRequestFilter {
+
+    private static final String BEARER_PREFIX = "Bearer ";
+    private static final String AUTH_PATH_PREFIX = "/api/auth/";
+
+    private final JwtUtil jwtUtil;
+    private final AuthPrincipalService authPrincipalService;
+    private final TokenRevocationList tokenRevocationList;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (authorization != null && authorization.startsWith(BEARER_PREFIX)) {
+            try {
+                TokenPrincipal token = jwtUtil.parse(authorization.substring(BEARER_PREFIX.length()));
+                if (tokenRevocationList.isRevoked(token.getTokenId())) {
+                    System.err.println("⚠️ [Auth] Revoked token on " + request.getRequestURI());
+                    if (rejectUnauthorized(request, response, "Phiên đăng nhập đã bị thu hồi!")) {
+                        return;
+                    }
+                } else {
+                    authPrincipalService.resolve(token)
+                            .ifPresent(principal -> request.setAttribute(AuthPrincipal.REQUEST_ATTRIBUTE, principal));
+                }
+            } catch (ExpiredJwtException e) {
+                if (rejectUnauthorized(request, response, "Access token đã hết hạn!")) {
+                    return;
+                }
+            } catch (JwtException | IllegalArgumentException e) {
+                System.err.println("⚠️ [Auth] Invalid token on " + request.getRequestURI() + ": " + e.getMessage());
+                if (rejectUnauthorized(request, response, "Token không hợp lệ!")) {
+                    return;
+                }
+            }
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    // true nếu đã trả 401 (request dừng ở đây)
+    private boolean rejectUnauthorized(HttpServletRequest request, HttpServletResponse response, String message)
+            throws IOException {
+        if (request.getRequestURI().startsWith(AUTH_PATH_PREFIX)) {
+            return false;
+        }
+        response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+        response.setContentType("application/json;charset=UTF-8");
+        response.getWriter().write("{\"error\":\"" + message + "\"}");
+        return true;
+    }
+}
@@ -0,0 +1,145 @@
+package com.hust.classroom.security;
+
+import com.hust.classroom.repository.RefreshTokenRepository;
+import com.hust.classroom.repository.RevokedAccessTokenRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Danh sách jti của access token đã bị thu hồi (đăng xuất, refresh token bị dùng lại).
+// Bloom filter trả lời "chắc chắn chưa bị thu hồi" cho gần như mọi request mà không cấp phát bộ nhớ;
+// chỉ khi filter báo có thể trùng mới tra tới tập jti chính xác.
+// Token thu hồi chỉ cần nhớ tới khi hết hạn, nên cả hai được dựng lại định kỳ từ bảng refresh_tokens và revoked_access_tokens.
+@Component
+public class TokenRevocationList {
+
+    private static final int HASH_COUNT = 4;
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final RevokedAccessTokenRepository revokedAccessTokenRepository;
+    private final int bitCount;
+
+    private volatile Snapshot snapshot;
+    private volatile Snapshot building; // Bản đang dựng lại, cũng nhận các jti mới bị thu hồi
+
+    private static final class Snapshot {
+        private final AtomicLongArray bits;
+        private final Set<String> tokenIds = ConcurrentHashMap.newKeySet();
+
+        private Snapshot(int bitCount) {
+            this.bits = new AtomicLongArray(bitCount / 64);
+        }
+    }
+
+    public TokenRevocationList(RefreshTokenRepository refreshTokenRepository,
+                               RevokedAccessTokenRepository revokedAccessTokenRepository,
+                               @Value("${jwt.revocation.bloom-bits:1048576}") int bloomBits) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.revokedAccessTokenRepository = revokedAccessTokenRepository;
+        this.bitCount = Math.max(64, bloomBits / 64 * 64);
+        this.snapshot = new Snapshot(bitCount);
+    }
+
+    public boolean isRevoked(String tokenId) {
+        if (tokenId == null) {
+            return false;
+        }
+        Snapshot current = snapshot;
+        if (!mightContain(current, tokenId)) {
+            return false;
+        }
+        return current.tokenIds.contains(tokenId);
+    }
+
+    // Gọi sau khi việc thu hồi đã được commit vào bảng refresh_tokens / revoked_access_tokens
+    public void revoke(String tokenId) {
+        if (tokenId == null) {
+            return;
+        }
+        // Đọc building trước snapshot: nếu lúc này chưa dựng lại thì lần dựng sau sẽ đọc được từ DB
+        Snapshot next = building;
+        if (next != null) {
+            add(next, tokenId);
+        }
+        add(snapshot, tokenId);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        rebuild();
+    }
+
+    // Bỏ các token đã hết hạn khỏi filter (Bloom filter không xóa được phần tử)
+    @Scheduled(fixedDelayString = "${jwt.revocation.rebuild-interval-ms:3600000}",
+               initialDelayString = "${jwt.revocation.rebuild-interval-ms:3600000}")
+    public synchronized void rebuild() {
+        // Đặt building trước khi đọc DB để token bị thu hồi trong lúc dựng lại không bị mất
+        Snapshot fresh = new Snapshot(bitCount);
+        building = fresh;
+        List<String> revoked;
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            revoked = new ArrayList<>(refreshTokenRepository.findRevokedAccessTokenIds(now));
+            revoked.addAll(revokedAccessTokenRepository.findActiveTokenIds(now));
+            for (String tokenId : revoked) {
+                add(fresh, tokenId);
+            }
+            snapshot = fresh;
+        } finally {
+            building = null;
+        }
+        System.out.println("✅ [Auth] Revocation list rebuilt with " + revoked.size() + " token ids");
+    }
+
+    private void add(Snapshot target, String tokenId) {
+        target.tokenIds.add(tokenId);
+        long hash = hash64(tokenId);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < HASH_COUNT; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bitCount);
+            int index = bit >>> 6;
+            long mask = 1L << (bit & 63);
+            long word;
+            do {
+                word = target.bits.get(index);
+            } while ((word & mask) == 0 && !target.bits.compareAndSet(index, word, word | mask));
+        }
+    }
+
+    private boolean mightContain(Snapshot target, String tokenId) {
+        long hash = hash64(tokenId);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < HASH_COUNT; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((target.bits.get(bit >>> 6) & (1L << (bit & 63))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // FNV-1a 64-bit trên từng ký tự, không cấp phát mảng byte
+    private long hash64(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        // Trộn thêm để hai nửa 32 bit độc lập hơn
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,114 @@
+package com.hust.classroom.service;
+
+import com.hust.classroom.entity.Assignment;
+import com.hust.classroom.entity.Class;
+import com.hust.classroom.entity.EmailOutbox;
+import com.hust.classroom.entity.Post;
+import com.hust.classroom.repository.ClassStudentRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+// Email thông báo cho cả lớp khi có bài đăng / bài tập mới.
+// Nội dung dựng trong transaction tạo bài, nhưng các dòng outbox (mỗi dòng một nhóm BCC) được ghi sau khi bài đã commit,
+// trong transaction riêng: lỗi khi xếp email thông báo không làm mất bài đăng / bài tập. Việc gửi do EmailOutboxDispatcher làm
+@Service
+public class AnnouncementMailService {
+    
+    private static final int PREVIEW_LENGTH = 500;
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    
+    private final ClassStudentRepository classStudentRepository;
+    private final EmailService emailService;
+    private final TransactionTemplate transactionTemplate;
+    
+    @Value("${mail.announcements.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${mail.announcements.app-url:http://localhost:5173}")
+    private String appUrl;
+    
+    public AnnouncementMailService(ClassStudentRepository classStudentRepository,
+                                   EmailService emailService,
+                                   PlatformTransactionManager transactionManager) {
+        this.classStudentRepository = classStudentRepository;
+        this.emailService = emailService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+    
+    public void announcePost(Post post) {
+        Class lopHoc = post.getLopHoc();
+        String authorName = post.getAuthor() != null ? post.getAuthor().getName() : "Giáo viên";
+        String subject = "📢 [" + lopHoc.getTenLop() + "] Bài đăng mới từ " + authorName;
+        String body = "Xin chào,\n\n" +
+                authorName + " vừa đăng một thông báo mới trong lớp " + lopHoc.getTenLop() + ":\n\n" +
+                preview(post.getContent()) + "\n\n" +
+                (post.getFilePath() != null ? "Bài đăng có tệp đính kèm.\n\n" : "") +
+                "Xem chi tiết tại: " + appUrl + "\n\n" +
+                "Trân trọng,\n" +
+                "HUST Classroom Team";
+        announce(lopHoc.getClassID(), subject, body);
+    }
+    
+    public void announceAssignment(Assignment assignment) {
+        Class lopHoc = assignment.getLopHoc();
+        boolean isMaterial = assignment.getType() == Assignment.Type.MATERIAL;
+        String kind = isMaterial ? "Tài liệu" : "Bài tập";
+        String subject = "📝 [" + lopHoc.getTenLop() + "] " + kind + " mới: " + assignment.getTitle();
+        String body = "Xin chào,\n\n" +
+                "Lớp " + lopHoc.getTenLop() + " có " + kind.toLowerCase() + " mới: " + assignment.getTitle() + "\n\n" +
+                (assignment.getDescription() != null ? preview(assignment.getDescription()) + "\n\n" : "") +
+                (assignment.getDueDate() != null ? "Hạn nộp: " + assignment.getDueDate().format(DATE_FORMAT) + "\n" : "") +
+                (assignment.getMaxScore() != null && !isMaterial ? "Điểm tối đa: " + assignment.getMaxScore() + "\n" : "") +
+                "\nXem chi tiết tại: " + appUrl + "\n\n" +
+                "Trân trọng,\n" +
+                "HUST Classroom Team";
+        announce(lopHoc.getClassID(), subject, body);
+    }
+    
+    private void announce(Integer classId, String subject, String body) {
+        if (!enabled) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(classId, subject, body);
+                }
+            });
+        } else {
+            enqueue(classId, subject, body);
+        }
+    }
+    
+    private void enqueue(Integer classId, String subject, String body) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                List<String> recipients = classStudentRepository.findStudentEmailsByClassId(classId);
+                List<EmailOutbox> emails = emailService.enqueueBulk(recipients, subject, body);
+                if (!emails.isEmpty()) {
+                    System.out.println("📧 Đã xếp " + emails.size() + " email thông báo cho " + recipients.size()
+                            + " sinh viên lớp " + classId);
+                }
+            });
+        } catch (Exception e) {
+            System.err.println("❌ [Announcement] Không xếp được email thông báo cho lớp " + classId + ": " + e.getMessage());
+        }
+    }
+    
+    private String preview(String content) {
+        if (content == null) {
+            return "";
+        }
+        return content.length() <= PREVIEW_LENGTH ? content : content.substring(0, PREVIEW_LENGTH) + "...";
+    }
+}
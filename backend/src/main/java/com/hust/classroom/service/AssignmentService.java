@@ -19,6 +19,8 @@ public class AssignmentService {
     
     private final AssignmentRepository assignmentRepository;
     private final ClassRepository classRepository;
+    private final AnnouncementMailService announcementMailService;
+    private final ClassDashboardService classDashboardService;
     
     public List<Assignment> getAssignmentsByClassId(Integer classId) {
         return assignmentRepository.findByClassId(classId);
@@ -50,7 +52,11 @@ public class AssignmentService {
         assignment.setCreatedAt(LocalDateTime.now());
         assignment.setUpdatedAt(LocalDateTime.now());
         
-        return assignmentRepository.save(assignment);
+        Assignment saved = assignmentRepository.save(assignment);
+        // Email thông báo cho sinh viên trong lớp (gửi nền qua outbox)
+        announcementMailService.announceAssignment(saved);
+        classDashboardService.evictAfterCommit(classId);
+        return saved;
     }
     
     @Transactional
@@ -71,10 +77,10 @@ public class AssignmentService {
     
     @Transactional
     public void deleteAssignment(Integer id) {
-        if (!assignmentRepository.existsById(id)) {
-            throw new RuntimeException("Không tìm thấy bài tập!");
-        }
-        assignmentRepository.deleteById(id);
+        Assignment assignment = assignmentRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Không tìm thấy bài tập!"));
+        assignmentRepository.delete(assignment);
+        classDashboardService.evictAfterCommit(assignment.getClassID());
     }
 }
 
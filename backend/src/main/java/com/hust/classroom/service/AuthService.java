@@ -1,61 +1,61 @@
 package com.hust.classroom.service;
 
-import com.hust.classroom.config.JwtUtil;
 import com.hust.classroom.dto.AuthResponse;
 import com.hust.classroom.dto.LoginRequest;
 import com.hust.classroom.dto.RegisterRequest;
 import com.hust.classroom.entity.User;
 import com.hust.classroom.repository.UserRepository;
-import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.Optional;
 
+// BCrypt cố ý chậm (hàng trăm ms): băm / so sánh mật khẩu chạy ngoài transaction,
+// chỉ phần đọc / ghi DB nằm trong transaction ngắn để không giữ kết nối Hikari trong lúc chờ hash
 @Service
-@RequiredArgsConstructor
 public class AuthService {
     
     private final UserRepository userRepository;
-    private final JwtUtil jwtUtil;
     private final EmailService emailService;
+    private final PasswordHashingService passwordHashingService;
+    private final RefreshTokenService refreshTokenService;
+    private final TransactionTemplate transactionTemplate;
+    
+    public AuthService(UserRepository userRepository,
+                       EmailService emailService,
+                       PasswordHashingService passwordHashingService,
+                       RefreshTokenService refreshTokenService,
+                       PlatformTransactionManager transactionManager) {
+        this.userRepository = userRepository;
+        this.emailService = emailService;
+        this.passwordHashingService = passwordHashingService;
+        this.refreshTokenService = refreshTokenService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
     
-    @Transactional
     public AuthResponse register(RegisterRequest request) {
-        // Kiểm tra email đã tồn tại
-        if (userRepository.existsByEmail(request.getEmail())) {
-            throw new RuntimeException("Email này đã được sử dụng!");
-        }
-        
-        // Kiểm tra MSSV nếu là Student
-        if (User.Role.Student.name().equals(request.getRole())) {
-            if (request.getMssv() == null || request.getMssv().isEmpty()) {
-                throw new RuntimeException("MSSV không được để trống!");
-            }
-            if (userRepository.existsByMssv(request.getMssv())) {
-                throw new RuntimeException("MSSV này đã được sử dụng! Mỗi sinh viên chỉ có thể có một tài khoản.");
-            }
-        }
-        
-        // Tạo user mới
-        User user = new User();
-        user.setName(request.getName());
-        user.setEmail(request.getEmail());
-        user.setPassword(request.getPassword()); // Trong thực tế nên hash password
-        user.setRole(User.Role.valueOf(request.getRole()));
-        user.setMssv(request.getMssv());
-        
-        user = userRepository.save(user);
-        
-        // Tạo token
-        String token = jwtUtil.generateToken(user.getId(), user.getEmail(), user.getRole().name());
-        
-        // Tạo response
-        AuthResponse response = new AuthResponse();
-        response.setToken(token);
-        response.setUser(AuthResponse.UserResponse.fromUser(user));
-        
-        return response;
+        // Kiểm tra trước khi hash để không tốn BCrypt cho yêu cầu chắc chắn bị từ chối
+        validateRegistration(request);
+        String passwordHash = passwordHashingService.hash(request.getPassword());
+        
+        return transactionTemplate.execute(status -> {
+            // Kiểm tra lại trong transaction: có thể đã có người đăng ký trong lúc hash
+            validateRegistration(request);
+            
+            // Tạo user mới
+            User user = new User();
+            user.setName(request.getName());
+            user.setEmail(request.getEmail());
+            user.setPassword(passwordHash);
+            user.setRole(User.Role.valueOf(request.getRole()));
+            user.setMssv(request.getMssv());
+            
+            user = userRepository.save(user);
+            
+            // Tạo access token + refresh token
+            return refreshTokenService.issue(user);
+        });
     }
     
     public AuthResponse login(LoginRequest request) {
@@ -67,23 +67,31 @@ public class AuthService {
         
         User user = userOpt.get();
         
-        // So sánh mật khẩu (trong thực tế nên dùng BCrypt)
-        if (!user.getPassword().equals(request.getPassword())) {
+        // So sánh mật khẩu (BCrypt, hoặc plaintext với tài khoản cũ)
+        if (!passwordHashingService.matches(request.getPassword(), user.getPassword())) {
             throw new RuntimeException("Sai mật khẩu!");
         }
         
-        // Tạo token
-        String token = jwtUtil.generateToken(user.getId(), user.getEmail(), user.getRole().name());
-        
-        // Tạo response
-        AuthResponse response = new AuthResponse();
-        response.setToken(token);
-        response.setUser(AuthResponse.UserResponse.fromUser(user));
-        
-        return response;
+        // Tài khoản cũ lưu plaintext (hoặc hash với cost cũ): hash lại ngay khi đăng nhập thành công
+        String oldHash = user.getPassword();
+        String rehashed = passwordHashingService.needsRehash(oldHash)
+                ? passwordHashingService.hash(request.getPassword())
+                : null;
+        
+        return transactionTemplate.execute(status -> {
+            User current = userRepository.findById(user.getId())
+                    .orElseThrow(() -> new RuntimeException("Không tìm thấy người dùng!"));
+            // Chỉ ghi hash mới nếu mật khẩu không bị đổi trong lúc đang hash
+            if (rehashed != null && oldHash.equals(current.getPassword())) {
+                current.setPassword(rehashed);
+                userRepository.save(current);
+            }
+            
+            // Tạo access token + refresh token
+            return refreshTokenService.issue(current);
+        });
     }
     
-    @Transactional
     public String forgotPassword(String email) {
         Optional<User> userOpt = userRepository.findByEmail(email);
         
@@ -91,21 +99,47 @@ public class AuthService {
             throw new RuntimeException("Không tìm thấy tài khoản với email này!");
         }
         
-        User user = userOpt.get();
+        Integer userId = userOpt.get().getId();
         
         // Tạo mật khẩu mới ngẫu nhiên (6 ký tự)
         String newPassword = generateRandomPassword(6);
-        
-        // Cập nhật mật khẩu mới
-        user.setPassword(newPassword);
-        userRepository.save(user);
-        
-        // Gửi email với mật khẩu mới
-        emailService.sendPasswordResetEmail(email, newPassword);
+        String passwordHash = passwordHashingService.hash(newPassword);
+        
+        transactionTemplate.executeWithoutResult(status -> {
+            User user = userRepository.findById(userId)
+                    .orElseThrow(() -> new RuntimeException("Không tìm thấy tài khoản với email này!"));
+            
+            // Cập nhật mật khẩu mới
+            user.setPassword(passwordHash);
+            userRepository.save(user);
+            
+            // Đăng xuất mọi phiên đang mở với mật khẩu cũ
+            refreshTokenService.revokeAll(user.getId());
+            
+            // Ghi email với mật khẩu mới vào outbox (gửi nền sau khi commit)
+            emailService.sendPasswordResetEmail(email, newPassword);
+        });
         
         return newPassword;
     }
     
+    private void validateRegistration(RegisterRequest request) {
+        // Kiểm tra email đã tồn tại
+        if (userRepository.existsByEmail(request.getEmail())) {
+            throw new RuntimeException("Email này đã được sử dụng!");
+        }
+        
+        // Kiểm tra MSSV nếu là Student
+        if (User.Role.Student.name().equals(request.getRole())) {
+            if (request.getMssv() == null || request.getMssv().isEmpty()) {
+                throw new RuntimeException("MSSV không được để trống!");
+            }
+            if (userRepository.existsByMssv(request.getMssv())) {
+                throw new RuntimeException("MSSV này đã được sử dụng! Mỗi sinh viên chỉ có thể có một tài khoản.");
+            }
+        }
+    }
+    
     private String generateRandomPassword(int length) {
         String chars = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
         StringBuilder password = new StringBuilder();
@@ -0,0 +1,145 @@
+package com.hust.classroom.service;
+
+import com.hust.classroom.entity.StoredFile;
+import com.hust.classroom.entity.UploadSession;
+import com.hust.classroom.repository.UploadSessionRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Service
+@RequiredArgsConstructor
+public class ChunkedUploadService {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final UploadSessionRepository uploadSessionRepository;
+    private final FileStorageService fileStorageService;
+
+    @Value("${file.chunked-upload.max-size:2GB}")
+    private DataSize maxSize;
+
+    @Value("${file.chunked-upload.expire-hours:24}")
+    private long expireHours;
+
+    @Transactional
+    public UploadSession initUpload(String originalFilename, Long totalSize, Integer uploaderId) throws IOException {
+        if (totalSize == null || totalSize <= 0) {
+            throw new RuntimeException("Kích thước file không hợp lệ!");
+        }
+        if (totalSize > maxSize.toBytes()) {
+            throw new RuntimeException("File vượt quá dung lượng cho phép (" + maxSize.toMegabytes() + "MB)!");
+        }
+
+        UploadSession session = new UploadSession();
+        session.setUploadId(UUID.randomUUID().toString());
+        session.setOriginalFilename(originalFilename);
+        session.setTotalSize(totalSize);
+        session.setUploaderId(uploaderId);
+        session.setCreatedAt(LocalDateTime.now());
+
+        Files.createFile(partPath(session.getUploadId()));
+        return uploadSessionRepository.save(session);
+    }
+
+    public UploadSession getSession(String uploadId) {
+        return uploadSessionRepository.findById(uploadId)
+                .orElseThrow(() -> new RuntimeException("Không tìm thấy phiên upload!"));
+    }
+
+    // Số byte liên tục server đã nhận được, client tiếp tục gửi từ vị trí này
+    public long getReceivedBytes(UploadSession session) throws IOException {
+        Path partPath = partPath(session.getUploadId());
+        return Files.exists(partPath) ? Files.size(partPath) : 0;
+    }
+
+    // Ghi chunk thẳng vào file đích tại vị trí offset (không đệm cả chunk trên heap)
+    public long appendChunk(UploadSession session, long offset, InputStream body) throws IOException {
+        Path partPath = partPath(session.getUploadId());
+        try (FileChannel channel = FileChannel.open(partPath, StandardOpenOption.WRITE)) {
+            long received = channel.size();
+            if (offset < 0 || offset > received) {
+                throw new RuntimeException("Offset " + offset + " không hợp lệ, server đã nhận " + received + " byte!");
+            }
+
+            ReadableByteChannel source = Channels.newChannel(body);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            long position = offset;
+            while (source.read(buffer) != -1) {
+                buffer.flip();
+                if (position + buffer.remaining() > session.getTotalSize()) {
+                    throw new RuntimeException("Dữ liệu vượt quá kích thước file đã khai báo!");
+                }
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+                buffer.clear();
+            }
+            return Math.max(received, position);
+        }
+    }
+
+    // Không chạy trong transaction chung: store() có transaction riêng, và khi store() lỗi
+    // phiên hỏng (file tạm đã bị kho lấy đi) phải được xóa chứ không bị rollback theo
+    public StoredFile completeUpload(UploadSession session) throws IOException {
+        long received = getReceivedBytes(session);
+        if (received != session.getTotalSize()) {
+            throw new RuntimeException("Upload chưa hoàn tất: đã nhận " + received + "/" + session.getTotalSize() + " byte!");
+        }
+
+        Path partPath = partPath(session.getUploadId());
+        StoredFile storedFile;
+        try {
+            storedFile = fileStorageService.store(partPath, session.getOriginalFilename(), session.getUploaderId());
+        } catch (IOException | RuntimeException e) {
+            if (Files.notExists(partPath)) {
+                // Dữ liệu đã mất (kho nhận file tạm nhưng ghi DB thất bại): đánh dấu phiên hỏng bằng cách xóa,
+                // lần gọi sau nhận 404 nên client upload lại từ đầu thay vì hoàn tất một phiên rỗng
+                uploadSessionRepository.delete(session);
+                System.err.println("❌ Upload " + session.getUploadId() + " thất bại, đã hủy phiên: " + e.getMessage());
+                throw new RuntimeException("Hoàn tất upload thất bại, vui lòng upload lại file!");
+            }
+            throw e;
+        }
+        uploadSessionRepository.delete(session);
+        return storedFile;
+    }
+
+    // Dọn các phiên upload bị bỏ dở
+    @Scheduled(fixedDelayString = "${file.chunked-upload.cleanup-interval-ms:3600000}")
+    @Transactional
+    public void cleanupExpiredSessions() {
+        List<UploadSession> expired = uploadSessionRepository.findCreatedBefore(LocalDateTime.now().minusHours(expireHours));
+        for (UploadSession session : expired) {
+            try {
+                Files.deleteIfExists(partPath(session.getUploadId()));
+            } catch (IOException e) {
+                System.err.println("⚠️ Không thể xóa file tạm " + session.getUploadId() + ": " + e.getMessage());
+            }
+        }
+        if (!expired.isEmpty()) {
+            uploadSessionRepository.deleteAll(expired);
+            System.out.println("✅ Đã dọn " + expired.size() + " phiên upload hết hạn");
+        }
+    }
+
+    private Path partPath(String uploadId) throws IOException {
+        return fileStorageService.getTempPath().resolve(uploadId + ".chunked");
+    }
+}
@@ -0,0 +1,126 @@
+package com.hust.classroom.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hust.classroom.dto.ClassDashboard;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+// Tổng quan một lớp trong hai query: một query đếm (các subquery vô hướng trên index class_id)
+// và một query lấy vài bài đăng mới nhất. Kết quả cache ngắn theo lớp và bị bỏ khi dữ liệu của lớp thay đổi
+@Service
+public class ClassDashboardService {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int maxRecentPosts;
+
+    // Lớp không tồn tại cũng được cache (Optional rỗng)
+    private final Cache<Integer, Optional<ClassDashboard>> dashboardCache;
+
+    public ClassDashboardService(JdbcTemplate jdbcTemplate,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${class.dashboard.max-recent-posts:20}") int maxRecentPosts,
+                                 @Value("${class.dashboard.cache-size:2000}") long cacheSize,
+                                 @Value("${class.dashboard.cache-ttl-seconds:30}") long cacheTtlSeconds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxRecentPosts = Math.max(1, maxRecentPosts);
+        this.dashboardCache = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(Duration.ofSeconds(cacheTtlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, dashboardCache, "classDashboards");
+    }
+
+    public Optional<ClassDashboard> getDashboard(Integer classId, int recentPosts) {
+        return dashboardCache.get(classId, this::load).map(cached -> {
+            // Cache giữ maxRecentPosts bài; trả về bản sao cắt theo số bài client yêu cầu
+            int count = Math.max(0, Math.min(recentPosts, cached.getRecentPosts().size()));
+            return new ClassDashboard(cached.getClassId(), cached.getTenLop(), cached.getStudentCount(),
+                    cached.getAssignmentCount(), cached.getMaterialCount(), cached.getPendingSubmissionCount(),
+                    cached.getGradedSubmissionCount(), new ArrayList<>(cached.getRecentPosts().subList(0, count)));
+        });
+    }
+
+    // Gọi khi thêm / xóa sinh viên, bài tập, bài đăng, bài nộp của lớp
+    public void evictAfterCommit(Integer classId) {
+        if (classId == null) {
+            return;
+        }
+        dashboardCache.invalidate(classId);
+        runAfterCommit(() -> dashboardCache.invalidate(classId));
+    }
+
+    // Thay đổi ảnh hưởng nhiều lớp (xóa người dùng, dọn bài nộp trùng)
+    public void evictAllAfterCommit() {
+        dashboardCache.invalidateAll();
+        runAfterCommit(dashboardCache::invalidateAll);
+    }
+
+    private void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        }
+    }
+
+    private Optional<ClassDashboard> load(Integer classId) {
+        List<ClassDashboard> rows = jdbcTemplate.query(
+                "SELECT c.class_id, c.ten_lop, " +
+                "(SELECT COUNT(*) FROM class_students cs WHERE cs.class_id = c.class_id) AS student_count, " +
+                "(SELECT COUNT(*) FROM assignments a WHERE a.class_id = c.class_id AND a.type = 'ASSIGNMENT') AS assignment_count, " +
+                "(SELECT COUNT(*) FROM assignments a WHERE a.class_id = c.class_id AND a.type = 'MATERIAL') AS material_count, " +
+                "(SELECT COUNT(*) FROM submissions s WHERE s.class_id = c.class_id " +
+                "    AND (s.trang_thai IS NULL OR s.trang_thai <> 'Graded')) AS pending_count, " +
+                "(SELECT COUNT(*) FROM submissions s WHERE s.class_id = c.class_id AND s.trang_thai = 'Graded') AS graded_count " +
+                "FROM classes c WHERE c.class_id = ?",
+                (rs, rowNum) -> {
+                    ClassDashboard dashboard = new ClassDashboard();
+                    dashboard.setClassId(rs.getInt("class_id"));
+                    dashboard.setTenLop(rs.getString("ten_lop"));
+                    dashboard.setStudentCount(rs.getLong("student_count"));
+                    dashboard.setAssignmentCount(rs.getLong("assignment_count"));
+                    dashboard.setMaterialCount(rs.getLong("material_count"));
+                    dashboard.setPendingSubmissionCount(rs.getLong("pending_count"));
+                    dashboard.setGradedSubmissionCount(rs.getLong("graded_count"));
+                    return dashboard;
+                },
+                classId);
+        if (rows.isEmpty()) {
+            return Optional.empty();
+        }
+
+        ClassDashboard dashboard = rows.get(0);
+        dashboard.setRecentPosts(jdbcTemplate.query(
+                "SELECT p.post_id, p.content, p.file_path, p.created_at, p.author_id, u.name AS author_name " +
+                "FROM posts p LEFT JOIN users u ON u.id = p.author_id " +
+                "WHERE p.class_id = ? ORDER BY p.created_at DESC NULLS LAST, p.post_id DESC LIMIT ?",
+                (rs, rowNum) -> {
+                    Timestamp createdAt = rs.getTimestamp("created_at");
+                    return new ClassDashboard.RecentPost(
+                            rs.getInt("post_id"),
+                            rs.getString("content"),
+                            rs.getString("file_path"),
+                            createdAt != null ? createdAt.toLocalDateTime() : null,
+                            rs.getInt("author_id"),
+                            rs.getString("author_name"));
+                },
+                classId, maxRecentPosts));
+        return Optional.of(dashboard);
+    }
+}
@@ -0,0 +1,89 @@
+package com.hust.classroom.service;
+
+import com.hust.classroom.dto.ClassListItem;
+import com.hust.classroom.dto.CursorPage;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Locale;
+
+// Danh sách lớp phân trang theo con trỏ (lớp mới nhất trước, con trỏ là classID của dòng cuối trang),
+// lọc theo phạm vi người gọi và tìm theo tên lớp / mã tham gia. Chỉ chọn các cột cần hiển thị
+@Service
+@RequiredArgsConstructor
+public class ClassListService {
+    
+    public static final int MAX_LIMIT = 100;
+    
+    private final EntityManager entityManager;
+    
+    // teacherId chỉ áp dụng cho Admin; giáo viên / sinh viên luôn chỉ thấy lớp của mình
+    @Transactional(readOnly = true)
+    public CursorPage<ClassListItem> getClassPage(Integer userId, String role, Integer teacherId,
+                                                  String search, String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_LIMIT));
+        
+        StringBuilder jpql = new StringBuilder(
+                "SELECT new com.hust.classroom.dto.ClassListItem(c.classID, c.tenLop, c.moTa, c.maThamGia, c.giaoVienID, g.name) " +
+                "FROM Class c LEFT JOIN c.giaoVien g WHERE 1 = 1");
+        if ("Teacher".equals(role)) {
+            if (userId == null) {
+                return new CursorPage<>(List.of(), null, false);
+            }
+            jpql.append(" AND c.giaoVienID = :userId");
+        } else if ("Student".equals(role)) {
+            if (userId == null) {
+                return new CursorPage<>(List.of(), null, false);
+            }
+            jpql.append(" AND EXISTS (SELECT 1 FROM ClassStudent cs WHERE cs.classID = c.classID AND cs.studentID = :userId)");
+        } else if (teacherId != null) {
+            jpql.append(" AND c.giaoVienID = :teacherId");
+        }
+        
+        String pattern = null;
+        if (search != null && !search.isBlank()) {
+            pattern = "%" + escapeLike(search.trim().toLowerCase(Locale.ROOT)) + "%";
+            // Khớp index GIN trigram trên LOWER(ten_lop) / LOWER(ma_tham_gia) (schema.sql), không quét toàn bảng
+            jpql.append(" AND (LOWER(c.tenLop) LIKE :pattern ESCAPE '!' OR LOWER(c.maThamGia) LIKE :pattern ESCAPE '!')");
+        }
+        Integer cursorId = null;
+        if (cursor != null) {
+            try {
+                cursorId = Integer.valueOf(CursorPage.decodeCursor(cursor, 1)[0]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Cursor không hợp lệ!");
+            }
+            jpql.append(" AND c.classID < :cursorId");
+        }
+        jpql.append(" ORDER BY c.classID DESC");
+        
+        TypedQuery<ClassListItem> query = entityManager.createQuery(jpql.toString(), ClassListItem.class);
+        if ("Teacher".equals(role) || "Student".equals(role)) {
+            query.setParameter("userId", userId);
+        } else if (teacherId != null) {
+            query.setParameter("teacherId", teacherId);
+        }
+        if (pattern != null) {
+            query.setParameter("pattern", pattern);
+        }
+        if (cursorId != null) {
+            query.setParameter("cursorId", cursorId);
+        }
+        
+        List<ClassListItem> rows = query.setMaxResults(pageSize + 1).getResultList();
+        boolean hasMore = rows.size() > pageSize;
+        List<ClassListItem> items = hasMore ? rows.subList(0, pageSize) : rows;
+        String nextCursor = hasMore
+                ? CursorPage.encodeCursor(String.valueOf(items.get(items.size() - 1).getClassID()))
+                : null;
+        return new CursorPage<>(items, nextCursor, hasMore);
+    }
+    
+    private String escapeLike(String value) {
+        return value.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+}
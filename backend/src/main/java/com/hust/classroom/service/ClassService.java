@@ -1,9 +1,11 @@
 package com.hust.classroom.service;
 
+import com.hust.classroom.dto.ClassJoinInfo;
 import com.hust.classroom.entity.Class;
 import com.hust.classroom.entity.ClassStudent;
 import com.hust.classroom.entity.User;
 import com.hust.classroom.repository.*;
+import com.hust.classroom.security.AuthPrincipal;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -12,7 +14,6 @@ import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
-import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
@@ -24,6 +25,9 @@ public class ClassService {
     private final PostRepository postRepository;
     private final AssignmentRepository assignmentRepository;
     private final SubmissionRepository submissionRepository;
+    private final AttendanceRepository attendanceRepository;
+    private final JoinCodeService joinCodeService;
+    private final ClassDashboardService classDashboardService;
     
     @Transactional(readOnly = true)
     public List<Class> getAllClasses(Integer userId, String role) {
@@ -84,16 +88,8 @@ public class ClassService {
                 throw new RuntimeException("Mã tham gia '" + classEntity.getMaThamGia() + "' đã được sử dụng! Vui lòng chọn mã khác.");
             }
         } else {
-            // Tạo mã tham gia nếu chưa có
-            String generatedCode;
-            int attempts = 0;
-            do {
-                generatedCode = UUID.randomUUID().toString().substring(0, 8).toUpperCase();
-                attempts++;
-                if (attempts > 10) {
-                    throw new RuntimeException("Không thể tạo mã tham gia duy nhất!");
-                }
-            } while (classRepository.findByMaThamGia(generatedCode).isPresent());
+            // Tạo mã tham gia nếu chưa có (bỏ qua các mã trùng mã giáo viên tự đặt)
+            String generatedCode = joinCodeService.allocate();
             
             classEntity.setMaThamGia(generatedCode);
             System.out.println("🔵 [Service] Generated maThamGia: " + generatedCode);
@@ -108,16 +104,11 @@ public class ClassService {
         Integer teacherId = classEntity.getGiaoVien().getId();
         System.out.println("🔵 [Service] Looking for teacher with ID: " + teacherId);
         
-        // Kiểm tra user có tồn tại không
-        if (!userRepository.existsById(teacherId)) {
-            System.err.println("❌ [Service] Teacher not found with ID: " + teacherId);
-            throw new RuntimeException("Không tìm thấy giáo viên với ID: " + teacherId + ". Vui lòng kiểm tra lại thông tin đăng nhập!");
-        }
-        
+        // Kiểm tra user có tồn tại không (một câu truy vấn, dùng luôn kết quả để kiểm tra role)
         User teacher = userRepository.findById(teacherId)
                 .orElseThrow(() -> {
                     System.err.println("❌ [Service] Teacher not found with ID: " + teacherId);
-                    return new RuntimeException("Không tìm thấy giáo viên với ID: " + teacherId);
+                    return new RuntimeException("Không tìm thấy giáo viên với ID: " + teacherId + ". Vui lòng kiểm tra lại thông tin đăng nhập!");
                 });
         
         // Kiểm tra role
@@ -134,6 +125,7 @@ public class ClassService {
         // Flush để đảm bảo ID được generate
         classRepository.flush();
         System.out.println("🔵 [Service] Class saved with ID: " + saved.getClassID());
+        joinCodeService.evictAfterCommit(saved.getMaThamGia());
         
         return saved;
     }
@@ -142,6 +134,7 @@ public class ClassService {
     public Class updateClass(Integer id, Class classDetails) {
         Class classEntity = classRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy lớp học!"));
+        String oldMaThamGia = classEntity.getMaThamGia();
         
         if (classDetails.getTenLop() != null) {
             classEntity.setTenLop(classDetails.getTenLop());
@@ -156,47 +149,35 @@ public class ClassService {
             classEntity.setGiaoVien(classDetails.getGiaoVien());
         }
         
+        joinCodeService.evictAfterCommit(oldMaThamGia, classEntity.getMaThamGia());
+        // Dashboard có tên lớp
+        classDashboardService.evictAfterCommit(id);
         return classRepository.save(classEntity);
     }
     
+    // Xóa lớp và dữ liệu liên quan bằng các câu DELETE theo tập (mỗi bảng một câu lệnh),
+    // không nạp từng bài đăng / bài nộp thành entity. Lớp rất lớn nên dùng PurgeService (xóa nền theo từng đợt)
     @Transactional
     public void deleteClass(Integer id) {
-        Class classEntity = classRepository.findById(id)
+        String maThamGia = classRepository.findById(id)
+                .map(Class::getMaThamGia)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy lớp học!"));
         
         try {
             // Xóa các bản ghi liên quan trước
-            // 1. Xóa posts
-            List<com.hust.classroom.entity.Post> posts = postRepository.findByClassId(id);
-            if (!posts.isEmpty()) {
-                postRepository.deleteAll(posts);
-                System.out.println("✅ Đã xóa " + posts.size() + " bài đăng liên quan");
-            }
+            int posts = postRepository.deleteByClassId(id);
+            int assignments = assignmentRepository.deleteByClassId(id);
+            int submissions = submissionRepository.deleteByClassId(id);
+            int enrollments = classStudentRepository.deleteByClassId(id);
+            int attendances = attendanceRepository.deleteByClassId(id);
+            System.out.println("✅ Đã xóa " + posts + " bài đăng, " + assignments + " bài tập/tài liệu, "
+                    + submissions + " bài nộp, " + enrollments + " đăng ký, " + attendances + " buổi điểm danh liên quan");
             
-            // 2. Xóa assignments
-            List<com.hust.classroom.entity.Assignment> assignments = assignmentRepository.findByClassId(id);
-            if (!assignments.isEmpty()) {
-                assignmentRepository.deleteAll(assignments);
-                System.out.println("✅ Đã xóa " + assignments.size() + " bài tập/tài liệu liên quan");
-            }
-            
-            // 3. Xóa submissions (cascade sẽ xử lý nhưng để chắc chắn)
-            List<com.hust.classroom.entity.Submission> submissions = submissionRepository.findByClassId(id);
-            if (!submissions.isEmpty()) {
-                submissionRepository.deleteAll(submissions);
-                System.out.println("✅ Đã xóa " + submissions.size() + " bài nộp liên quan");
-            }
-            
-            // 4. Xóa class enrollments (cascade sẽ xử lý nhưng để chắc chắn)
-            List<ClassStudent> enrollments = classStudentRepository.findByClassId(id);
-            if (!enrollments.isEmpty()) {
-                classStudentRepository.deleteAll(enrollments);
-                System.out.println("✅ Đã xóa " + enrollments.size() + " đăng ký lớp học liên quan");
-            }
-            
-            // 5. Cuối cùng mới xóa class
-            classRepository.deleteById(id);
+            // Cuối cùng mới xóa class
+            classRepository.deleteByClassId(id);
             System.out.println("✅ Đã xóa lớp học ID: " + id);
+            joinCodeService.evictAfterCommit(maThamGia);
+            classDashboardService.evictAfterCommit(id);
         } catch (Exception e) {
             System.err.println("❌ Lỗi khi xóa lớp học: " + e.getMessage());
             e.printStackTrace();
@@ -204,52 +185,38 @@ public class ClassService {
         }
     }
     
+    // Sinh viên đã xác thực: AuthPrincipalService đã kiểm tra user tồn tại, chỉ cần tham chiếu cho khóa ngoại
     @Transactional
-    public ClassStudent enrollStudent(Integer studentId, String maThamGia) {
-        // Tìm lớp theo mã tham gia
-        Optional<Class> classOpt = classRepository.findByMaThamGia(maThamGia);
-        if (classOpt.isEmpty()) {
-            throw new RuntimeException("Mã tham gia không hợp lệ!");
-        }
-        
-        Class classEntity = classOpt.get();
+    public ClassJoinInfo enrollStudent(AuthPrincipal student, String maThamGia) {
+        return enroll(student.getUserId(), userRepository.getReferenceById(student.getUserId()), maThamGia);
+    }
+    
+    @Transactional
+    public ClassJoinInfo enrollStudent(Integer studentId, String maThamGia) {
+        User student = userRepository.findById(studentId)
+                .orElseThrow(() -> new RuntimeException("Không tìm thấy sinh viên!"));
+        return enroll(studentId, student, maThamGia);
+    }
+    
+    private ClassJoinInfo enroll(Integer studentId, User student, String maThamGia) {
+        // Tìm lớp theo mã tham gia (qua cache)
+        ClassJoinInfo classInfo = joinCodeService.findByCode(maThamGia)
+                .orElseThrow(() -> new RuntimeException("Mã tham gia không hợp lệ!"));
         
         // Kiểm tra đã tham gia chưa
-        if (classStudentRepository.existsByClassIDAndStudentID(classEntity.getClassID(), studentId)) {
+        if (classStudentRepository.existsByClassIDAndStudentID(classInfo.getClassID(), studentId)) {
             throw new RuntimeException("Sinh viên đã tham gia lớp này!");
         }
         
-        // Tạo ClassStudent
+        // Tạo ClassStudent (lớp chỉ cần tham chiếu, không phải nạp lại từ DB)
         ClassStudent classStudent = new ClassStudent();
-        classStudent.setLopHoc(classEntity);
-        classStudent.setStudent(userRepository.findById(studentId)
-                .orElseThrow(() -> new RuntimeException("Không tìm thấy sinh viên!")));
+        classStudent.setLopHoc(classRepository.getReferenceById(classInfo.getClassID()));
+        classStudent.setStudent(student);
         classStudent.setEnrolledAt(Timestamp.valueOf(LocalDateTime.now()));
+        classStudentRepository.save(classStudent);
         
-        return classStudentRepository.save(classStudent);
-    }
-    
-    public List<User> getStudentsByClassId(Integer classId) {
-        System.out.println("🔵 [Service] Getting students for class ID: " + classId);
-        List<ClassStudent> classStudents = classStudentRepository.findByClassId(classId);
-        System.out.println("🔵 [Service] Found " + classStudents.size() + " class students");
-        
-        List<User> students = classStudents.stream()
-                .map(cs -> {
-                    User student = cs.getStudent();
-                    // Force load để đảm bảo dữ liệu được load đầy đủ
-                    if (student != null) {
-                        student.getName();
-                        student.getEmail();
-                        student.getMssv();
-                    }
-                    return student;
-                })
-                .filter(s -> s != null)
-                .toList();
-        
-        System.out.println("🔵 [Service] Returning " + students.size() + " students");
-        return students;
+        classDashboardService.evictAfterCommit(classInfo.getClassID());
+        return classInfo;
     }
     
     @Transactional
@@ -298,6 +265,7 @@ public class ClassService {
         
         System.out.println("🔵 [Service] Saving ClassStudent...");
         ClassStudent saved = classStudentRepository.save(classStudent);
+        classDashboardService.evictAfterCommit(classId);
         classStudentRepository.flush();
         System.out.println("🔵 [Service] ClassStudent saved with ID: " + saved.getId());
         
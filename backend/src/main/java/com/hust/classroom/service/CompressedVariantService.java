@@ -0,0 +1,201 @@
+package com.hust.classroom.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hust.classroom.entity.StoredFile;
+import com.hust.classroom.event.BlobDeletedEvent;
+import com.hust.classroom.event.FileStoredEvent;
+import com.hust.classroom.storage.BlobStorage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+// Bản nén gzip của file dạng text (mã nguồn, CSV, HTML, SVG...), tạo một lần sau khi upload
+// và lưu cạnh blob gốc với khóa {sha256}.gz
+@Service
+public class CompressedVariantService {
+
+    public static final String GZIP_SUFFIX = ".gz";
+
+    private static final long MIN_SIZE = 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final Set<String> COMPRESSIBLE_TYPES = Set.of(
+            "application/json", "application/javascript", "application/xml",
+            "application/x-sh", "application/sql", "image/svg+xml");
+
+    private static final Set<String> TEXT_EXTENSIONS = Set.of(
+            "txt", "csv", "md", "html", "htm", "css", "js", "ts", "json", "xml", "svg", "sql",
+            "java", "py", "c", "h", "cpp", "hpp", "cs", "go", "rs", "kt", "php", "rb", "sh", "ipynb");
+
+    private final BlobStorage blobStorage;
+    private final FileStorageService fileStorageService;
+    private final FileProcessingQueue fileProcessingQueue;
+    private final HotFileCache hotFileCache;
+
+    // sha256 -> kích thước bản gzip (rỗng nếu nén không có lợi)
+    private final Cache<String, OptionalLong> gzipSizes = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .build();
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    @Value("${file.compression.max-size:50MB}")
+    private DataSize maxSize;
+
+    public CompressedVariantService(BlobStorage blobStorage,
+                                    FileStorageService fileStorageService,
+                                    FileProcessingQueue fileProcessingQueue,
+                                    HotFileCache hotFileCache) {
+        this.blobStorage = blobStorage;
+        this.fileStorageService = fileStorageService;
+        this.fileProcessingQueue = fileProcessingQueue;
+        this.hotFileCache = hotFileCache;
+    }
+
+    @TransactionalEventListener
+    public void onFileStored(FileStoredEvent event) {
+        schedule(event.getStoredFile());
+    }
+
+    @TransactionalEventListener
+    public void onBlobDeleted(BlobDeletedEvent event) {
+        String sha256 = event.getSha256();
+        gzipSizes.invalidate(sha256);
+        hotFileCache.invalidate(gzipKey(sha256));
+        try {
+            blobStorage.delete(gzipKey(sha256));
+        } catch (IOException e) {
+            System.err.println("⚠️ [Compression] Could not delete gzip variant of " + sha256 + ": " + e.getMessage());
+        }
+    }
+
+    public boolean isCompressible(StoredFile storedFile) {
+        Long size = storedFile.getSize();
+        if (size == null || size < MIN_SIZE || size > maxSize.toBytes()) {
+            return false;
+        }
+        String contentType = storedFile.getContentType();
+        if (contentType != null) {
+            String baseType = contentType.split(";")[0].trim().toLowerCase(Locale.ROOT);
+            if (baseType.startsWith("text/") || COMPRESSIBLE_TYPES.contains(baseType)) {
+                return true;
+            }
+        }
+        String name = storedFile.getOriginalName() != null ? storedFile.getOriginalName() : storedFile.getFilename();
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 && TEXT_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    // Client có chấp nhận gzip không (bỏ qua "gzip;q=0")
+    public boolean acceptsGzip(HttpHeaders requestHeaders) {
+        for (String value : requestHeaders.getOrEmpty(HttpHeaders.ACCEPT_ENCODING)) {
+            for (String token : value.split(",")) {
+                String[] parts = token.trim().split(";");
+                String coding = parts[0].trim();
+                if (!coding.equalsIgnoreCase("gzip") && !coding.equals("*")) {
+                    continue;
+                }
+                boolean rejected = false;
+                for (int i = 1; i < parts.length; i++) {
+                    String param = parts[i].trim();
+                    if (param.startsWith("q=")) {
+                        try {
+                            rejected = Double.parseDouble(param.substring(2)) == 0;
+                        } catch (NumberFormatException e) {
+                            rejected = true;
+                        }
+                    }
+                }
+                if (!rejected) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Kích thước bản gzip nếu đã có; nếu chưa có thì xếp lịch tạo và lần này trả về bản gốc
+    public OptionalLong findGzipSize(StoredFile storedFile) throws IOException {
+        String sha256 = storedFile.getSha256();
+        OptionalLong cached = gzipSizes.getIfPresent(sha256);
+        if (cached != null) {
+            return cached;
+        }
+        OptionalLong size = blobStorage.size(gzipKey(sha256));
+        if (size.isPresent()) {
+            gzipSizes.put(sha256, size);
+        } else {
+            schedule(storedFile);
+        }
+        return size;
+    }
+
+    public String gzipKey(String sha256) {
+        return sha256 + GZIP_SUFFIX;
+    }
+
+    private void schedule(StoredFile storedFile) {
+        if (!isCompressible(storedFile)) {
+            return;
+        }
+        String sha256 = storedFile.getSha256();
+        if (gzipSizes.getIfPresent(sha256) != null || !inFlight.add(sha256)) {
+            return;
+        }
+        boolean submitted = fileProcessingQueue.submit("gzip " + sha256, () -> {
+            try {
+                compress(sha256, storedFile.getSize());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                inFlight.remove(sha256);
+            }
+        });
+        if (!submitted) {
+            inFlight.remove(sha256);
+        }
+    }
+
+    private void compress(String sha256, long originalSize) throws IOException {
+        // Nén một lần nên dùng mức nén cao nhất
+        Path tempFile = Files.createTempFile(fileStorageService.getTempPath(), "gzip-", ".part");
+        try {
+            try (InputStream in = blobStorage.openStream(sha256);
+                 OutputStream out = new GZIPOutputStream(Files.newOutputStream(tempFile), BUFFER_SIZE) {
+                     {
+                         def.setLevel(Deflater.BEST_COMPRESSION);
+                     }
+                 }) {
+                in.transferTo(out);
+            }
+
+            long compressedSize = Files.size(tempFile);
+            // Không đáng lưu nếu chỉ giảm được dưới 10%
+            if (compressedSize >= originalSize * 0.9) {
+                gzipSizes.put(sha256, OptionalLong.empty());
+                return;
+            }
+            blobStorage.put(gzipKey(sha256), tempFile);
+            hotFileCache.invalidate(gzipKey(sha256));
+            gzipSizes.put(sha256, OptionalLong.of(compressedSize));
+            System.out.println("✅ [Compression] " + sha256 + ": " + originalSize + " -> " + compressedSize + " bytes");
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package com.hust.classroom.service;
+
+import com.hust.classroom.entity.EmailOutbox;
+import com.hust.classroom.event.EmailQueuedEvent;
+import com.hust.classroom.repository.EmailOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+// Gửi email trong bảng email_outbox bằng thread pool riêng có giới hạn.
+// Lỗi SMTP được thử lại với thời gian chờ tăng gấp đôi mỗi lần; quá số lần thử thì chuyển sang DEAD để xem lại
+// (giữ người nhận, tiêu đề, lỗi; nội dung bị xóa vì có thể chứa mật khẩu tạm).
+// Mỗi email được "giữ chỗ" một khoảng thời gian khi lấy ra gửi, nên nếu server tắt giữa chừng email sẽ được gửi lại
+@Service
+public class EmailOutboxDispatcher {
+
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final EmailService emailService;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolExecutor executor;
+    private final ReentrantLock pollLock = new ReentrantLock();
+
+    private final Timer sendTimer;
+    private final Counter sentCounter;
+    private final Counter retriedCounter;
+    private final Counter deadCounter;
+    private final Counter recipientCounter;
+    private final Timer lagTimer;
+    private final AtomicLong nextSendSlot = new AtomicLong(System.nanoTime());
+    private final AtomicInteger inFlight = new AtomicInteger(); // Email đã lấy ra (SENDING) nhưng chưa gửi xong
+
+    private static final String REDACTED_BODY = "[Nội dung đã được xóa sau khi gửi thất bại]";
+
+    @Value("${mail.outbox.batch-size:50}")
+    private int batchSize;
+
+    @Value("${mail.outbox.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${mail.outbox.initial-backoff-seconds:30}")
+    private long initialBackoffSeconds;
+
+    @Value("${mail.outbox.max-backoff-seconds:3600}")
+    private long maxBackoffSeconds;
+
+    @Value("${mail.outbox.messages-per-connection:20}")
+    private int messagesPerConnection;
+
+    @Value("${mail.outbox.rate-per-second:5}")
+    private int ratePerSecond;
+
+    @Value("${mail.outbox.lease-seconds:120}")
+    private long leaseSeconds;
+
+    @Value("${mail.outbox.retention-hours:24}")
+    private long retentionHours;
+
+    public EmailOutboxDispatcher(EmailOutboxRepository emailOutboxRepository,
+                                 EmailService emailService,
+                                 PlatformTransactionManager transactionManager,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${mail.outbox.threads:2}") int threads,
+                                 @Value("${mail.outbox.queue-capacity:100}") int queueCapacity) {
+        this.emailOutboxRepository = emailOutboxRepository;
+        this.emailService = emailService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "email-outbox-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        this.sendTimer = Timer.builder("mail.outbox.send").register(meterRegistry);
+        this.sentCounter = Counter.builder("mail.outbox.sent").register(meterRegistry);
+        this.retriedCounter = Counter.builder("mail.outbox.retried").register(meterRegistry);
+        this.deadCounter = Counter.builder("mail.outbox.dead").register(meterRegistry);
+        this.recipientCounter = Counter.builder("mail.outbox.recipients").register(meterRegistry);
+        // Thời gian từ lúc ghi vào outbox tới lúc gửi xong
+        this.lagTimer = Timer.builder("mail.outbox.lag").register(meterRegistry);
+        Gauge.builder("mail.outbox.queue.size", executor, pool -> pool.getQueue().size()).register(meterRegistry);
+    }
+
+    // Có email mới: quét ngay trên thread của pool, không làm chậm request vừa commit
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEmailQueued(EmailQueuedEvent event) {
+        try {
+            executor.execute(this::poll);
+        } catch (RejectedExecutionException e) {
+            // Pool đang bận: lần quét định kỳ sẽ lấy email này
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${mail.outbox.poll-interval-ms:5000}")
+    public void poll() {
+        // Chỉ một lượt quét tại một thời điểm; lượt đang chạy hoặc lượt định kỳ kế tiếp sẽ lấy email mới
+        if (!pollLock.tryLock()) {
+            return;
+        }
+        try {
+            int capacity = executor.getQueue().remainingCapacity();
+            if (capacity <= 0) {
+                return;
+            }
+            // Mỗi task gửi một nhóm email qua cùng một kết nối SMTP
+            int groupSize = Math.max(1, messagesPerConnection);
+            int limit = Math.min(batchSize, capacity * groupSize);
+            if (ratePerSecond > 0) {
+                // Chỉ lấy số email gửi kịp trong nửa thời gian giữ chỗ (tính cả email đang chờ throttle),
+                // nếu không email nằm chờ quá hạn giữ chỗ sẽ bị lượt quét sau lấy lại và gửi trùng
+                long budget = ratePerSecond * leaseSeconds / 2 - inFlight.get();
+                limit = (int) Math.min(limit, budget);
+            }
+            if (limit <= 0) {
+                return;
+            }
+            List<EmailOutbox> due = claimDue(limit);
+            inFlight.addAndGet(due.size());
+            for (int from = 0; from < due.size(); from += groupSize) {
+                List<EmailOutbox> group = List.copyOf(due.subList(from, Math.min(from + groupSize, due.size())));
+                try {
+                    executor.execute(() -> send(group));
+                } catch (RejectedExecutionException e) {
+                    // Hết chỗ trong hàng đợi: email được lấy lại khi hết hạn giữ chỗ
+                    inFlight.addAndGet(-(due.size() - from));
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("❌ [EmailOutbox] Poll failed: " + e.getMessage());
+        } finally {
+            pollLock.unlock();
+        }
+    }
+
+    // Xóa email đã gửi (nội dung có thể chứa mật khẩu tạm)
+    @Scheduled(cron = "${mail.outbox.cleanup-cron:0 15 * * * *}")
+    public void cleanupSent() {
+        Integer deleted = transactionTemplate.execute(status ->
+                emailOutboxRepository.deleteSentBefore(LocalDateTime.now().minusHours(retentionHours)));
+        if (deleted != null && deleted > 0) {
+            System.out.println("✅ [EmailOutbox] Đã xóa " + deleted + " email đã gửi");
+        }
+    }
+
+    private List<EmailOutbox> claimDue(int limit) {
+        return transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<EmailOutbox> due = emailOutboxRepository.lockDue(now, limit);
+            for (EmailOutbox email : due) {
+                email.setStatus(EmailOutbox.Status.SENDING);
+                email.setAttempts(email.getAttempts() + 1);
+                email.setNextAttemptAt(now.plusSeconds(leaseSeconds));
+            }
+            return due;
+        });
+    }
+
+    private void send(List<EmailOutbox> group) {
+        try {
+            throttle(group.size());
+            // Email đã quá hạn giữ chỗ trong lúc chờ có thể đã được lượt quét khác lấy lại: bỏ qua để không gửi trùng
+            LocalDateTime now = LocalDateTime.now();
+            List<EmailOutbox> emails = group.stream()
+                    .filter(email -> email.getNextAttemptAt() == null || email.getNextAttemptAt().isAfter(now))
+                    .toList();
+            if (emails.size() < group.size()) {
+                System.err.println("⚠️ [EmailOutbox] Bỏ qua " + (group.size() - emails.size()) + " email đã hết hạn giữ chỗ");
+            }
+            if (!emails.isEmpty()) {
+                deliver(emails);
+            }
+        } finally {
+            inFlight.addAndGet(-group.size());
+        }
+    }
+
+    private void deliver(List<EmailOutbox> emails) {
+        Map<Long, Exception> failures;
+        try {
+            failures = sendTimer.record(() -> emailService.deliver(emails));
+        } catch (Exception e) {
+            failures = new HashMap<>();
+            for (EmailOutbox email : emails) {
+                failures.put(email.getId(), e);
+            }
+        }
+
+        for (EmailOutbox email : emails) {
+            Exception failure = failures.get(email.getId());
+            if (failure == null) {
+                markSent(email);
+            } else {
+                markFailed(email, failure);
+            }
+        }
+    }
+
+    private void markSent(EmailOutbox email) {
+        LocalDateTime sentAt = LocalDateTime.now();
+        update(email.getId(), row -> {
+            row.setStatus(EmailOutbox.Status.SENT);
+            row.setSentAt(sentAt);
+            row.setLastError(null);
+        });
+        sentCounter.increment();
+        recipientCounter.increment(emailService.countRecipients(email));
+        if (email.getCreatedAt() != null) {
+            lagTimer.record(Duration.between(email.getCreatedAt(), sentAt));
+        }
+    }
+
+    private void markFailed(EmailOutbox email, Exception e) {
+        String error = e.getClass().getSimpleName() + ": " + e.getMessage();
+        // bcc có thể đã được EmailService thu hẹp về các địa chỉ chưa nhận được email (gửi một phần)
+        String bcc = email.getBcc();
+        if (email.getAttempts() >= maxAttempts) {
+            update(email.getId(), row -> {
+                row.setStatus(EmailOutbox.Status.DEAD);
+                // Email DEAD không bao giờ được gửi lại và không bị cleanupSent xóa: bỏ nội dung (mật khẩu tạm...)
+                row.setBody(REDACTED_BODY);
+                row.setBcc(bcc);
+                row.setLastError(error);
+            });
+            deadCounter.increment();
+            System.err.println("❌ [EmailOutbox] Gửi email " + email.getId() + " đến " + email.getRecipient()
+                    + " thất bại sau " + email.getAttempts() + " lần: " + error);
+        } else {
+            LocalDateTime nextAttempt = LocalDateTime.now().plusSeconds(backoffSeconds(email.getAttempts()));
+            update(email.getId(), row -> {
+                row.setStatus(EmailOutbox.Status.PENDING);
+                row.setBcc(bcc);
+                row.setNextAttemptAt(nextAttempt);
+                row.setLastError(error);
+            });
+            retriedCounter.increment();
+            System.err.println("⚠️ [EmailOutbox] Gửi email " + email.getId() + " lỗi (lần " + email.getAttempts()
+                    + "), thử lại lúc " + nextAttempt + ": " + error);
+        }
+    }
+
+    // Giữ tốc độ gửi chung của mọi worker dưới mail.outbox.rate-per-second (nhà cung cấp SMTP giới hạn tần suất).
+    // Mỗi nhóm đặt trước các "khe" thời gian liên tiếp rồi chờ tới khe của mình
+    private void throttle(int messages) {
+        if (ratePerSecond <= 0) {
+            return;
+        }
+        long cost = TimeUnit.SECONDS.toNanos(1) * messages / ratePerSecond;
+        long now = System.nanoTime();
+        long start = nextSendSlot.getAndAccumulate(cost, (slot, add) -> Math.max(slot, now) + add);
+        long waitNanos = Math.max(start, now) - now;
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // initial * 2^(attempts-1), tối đa maxBackoff, cộng ngẫu nhiên tới 20% để các email lỗi cùng lúc không dồn lại
+    private long backoffSeconds(int attempts) {
+        long backoff = initialBackoffSeconds << Math.min(attempts - 1, 20);
+        backoff = Math.min(backoff, maxBackoffSeconds);
+        return backoff + ThreadLocalRandom.current().nextLong(backoff / 5 + 1);
+    }
+
+    private void update(Long id, Consumer<EmailOutbox> change) {
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    emailOutboxRepository.findById(id).ifPresent(change));
+        } catch (Exception e) {
+            // Không cập nhật được trạng thái: email sẽ được lấy lại khi hết hạn giữ chỗ
+            System.err.println("❌ [EmailOutbox] Could not update email " + id + ": " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
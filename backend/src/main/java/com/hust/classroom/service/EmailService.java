@@ -1,52 +1,227 @@
 package com.hust.classroom.service;
 
+import com.hust.classroom.entity.EmailOutbox;
+import com.hust.classroom.event.EmailQueuedEvent;
+import com.hust.classroom.repository.EmailOutboxRepository;
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.SimpleMailMessage;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// Email không gửi trực tiếp trong request: ghi vào bảng email_outbox cùng transaction với thao tác nghiệp vụ,
+// EmailOutboxDispatcher gửi nền và thử lại khi SMTP lỗi
 @Service
 @RequiredArgsConstructor
 public class EmailService {
     
     private final JavaMailSender mailSender;
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final ApplicationEventPublisher eventPublisher;
     
     @Value("${spring.mail.username:}")
     private String fromEmail;
     
+    @Value("${mail.bulk.to-address:}")
+    private String bulkToAddress; // Địa chỉ hiện ở ô "To" của thông báo hàng loạt (mặc định là người gửi)
+    
+    @Value("${mail.bulk.recipients-per-message:50}")
+    private int bulkRecipientsPerMessage;
+    
+    // Tiêu đề dài (tên lớp + tên bài tập) bị cắt bớt: vẫn vừa cột subject của bảng cũ tạo bằng VARCHAR(255)
+    private static final int MAX_SUBJECT_LENGTH = 200;
+    
     public void sendPasswordResetEmail(String toEmail, String newPassword) {
+        enqueue(toEmail,
+            "🔐 Khôi phục mật khẩu - HUST Classroom",
+            "Xin chào,\n\n" +
+            "Bạn đã yêu cầu khôi phục mật khẩu cho tài khoản HUST Classroom.\n\n" +
+            "Mật khẩu mới của bạn là: " + newPassword + "\n\n" +
+            "Vui lòng đăng nhập và đổi mật khẩu ngay sau khi nhận được email này.\n\n" +
+            "Nếu bạn không yêu cầu khôi phục mật khẩu, vui lòng bỏ qua email này.\n\n" +
+            "Trân trọng,\n" +
+            "HUST Classroom Team"
+        );
+    }
+    
+    // Tham gia transaction hiện tại (nếu có): email chỉ được gửi khi thao tác nghiệp vụ commit thành công
+    @Transactional
+    public EmailOutbox enqueue(String toEmail, String subject, String body) {
+        EmailOutbox email = new EmailOutbox();
+        email.setRecipient(toEmail);
+        email.setSubject(truncateSubject(subject));
+        email.setBody(body);
+        email.setStatus(EmailOutbox.Status.PENDING);
+        email.setAttempts(0);
+        email.setCreatedAt(LocalDateTime.now());
+        email.setNextAttemptAt(email.getCreatedAt());
+        email = emailOutboxRepository.save(email);
+        
+        eventPublisher.publishEvent(new EmailQueuedEvent(email.getId()));
+        return email;
+    }
+    
+    // Thông báo hàng loạt: nội dung dựng một lần, người nhận chia thành nhóm BCC,
+    // mỗi nhóm là một email (300 sinh viên, nhóm 50 -> 6 email thay vì 300)
+    @Transactional
+    public List<EmailOutbox> enqueueBulk(List<String> recipients, String subject, String body) {
+        List<EmailOutbox> emails = new ArrayList<>();
+        if (recipients.isEmpty()) {
+            return emails;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        int groupSize = Math.max(1, bulkRecipientsPerMessage);
+        for (int from = 0; from < recipients.size(); from += groupSize) {
+            List<String> group = recipients.subList(from, Math.min(from + groupSize, recipients.size()));
+            EmailOutbox email = new EmailOutbox();
+            email.setRecipient(bulkToAddress());
+            email.setBcc(String.join(",", group));
+            email.setSubject(truncateSubject(subject));
+            email.setBody(body);
+            email.setStatus(EmailOutbox.Status.PENDING);
+            email.setAttempts(0);
+            email.setCreatedAt(now);
+            email.setNextAttemptAt(now);
+            emails.add(email);
+        }
+        emails = emailOutboxRepository.saveAll(emails);
+        
+        eventPublisher.publishEvent(new EmailQueuedEvent(emails.get(0).getId()));
+        return emails;
+    }
+    
+    public int countRecipients(EmailOutbox email) {
+        return email.getBcc() != null ? email.getBcc().split(",").length : 1;
+    }
+    
+    // Gửi thật qua SMTP. Cả danh sách đi qua một kết nối SMTP (JavaMailSenderImpl mở Transport một lần
+    // cho cả mảng MimeMessage). Trả về lỗi theo id email để dispatcher thử lại riêng từng email
+    public Map<Long, Exception> deliver(List<EmailOutbox> emails) {
+        Map<Long, Exception> failures = new HashMap<>();
+        
+        // Kiểm tra xem email đã được cấu hình chưa
+        if (fromEmail == null || fromEmail.isEmpty() || fromEmail.equals("your-email@gmail.com")) {
+            System.err.println("⚠️ Email chưa được cấu hình! Vui lòng cấu hình email trong application.properties");
+            for (EmailOutbox email : emails) {
+                String to = email.getBcc() != null ? email.getBcc() : email.getRecipient();
+                System.err.println("📧 Email cho " + to + " - " + email.getSubject() + ":\n" + email.getBody());
+            }
+            return failures;
+        }
+        
+        Map<MimeMessage, EmailOutbox> messageEmails = new IdentityHashMap<>();
+        for (EmailOutbox email : emails) {
+            try {
+                MimeMessage message = mailSender.createMimeMessage();
+                MimeMessageHelper helper = new MimeMessageHelper(message, StandardCharsets.UTF_8.name());
+                helper.setFrom(fromEmail);
+                helper.setTo(email.getRecipient());
+                if (email.getBcc() != null) {
+                    helper.setBcc(email.getBcc().split(","));
+                }
+                helper.setSubject(email.getSubject());
+                helper.setText(email.getBody());
+                messageEmails.put(message, email);
+            } catch (MessagingException e) {
+                failures.put(email.getId(), e);
+            }
+        }
+        if (messageEmails.isEmpty()) {
+            return failures;
+        }
+        
         try {
-            // Kiểm tra xem email đã được cấu hình chưa
-            if (fromEmail == null || fromEmail.isEmpty() || fromEmail.equals("your-email@gmail.com")) {
-                System.err.println("⚠️ Email chưa được cấu hình! Vui lòng cấu hình email trong application.properties");
-                System.err.println("📧 Mật khẩu mới cho " + toEmail + ": " + newPassword);
-                return;
+            mailSender.send(messageEmails.keySet().toArray(new MimeMessage[0]));
+        } catch (MailSendException e) {
+            // Chỉ những email trong failedMessages bị lỗi, các email khác đã gửi xong
+            e.getFailedMessages().forEach((message, error) -> {
+                EmailOutbox email = messageEmails.get(message);
+                if (email != null && !handlePartialSend(email, error)) {
+                    failures.put(email.getId(), error);
+                }
+            });
+            if (e.getFailedMessages().isEmpty()) {
+                messageEmails.values().forEach(email -> failures.put(email.getId(), e));
             }
-            
-            SimpleMailMessage message = new SimpleMailMessage();
-            message.setFrom(fromEmail);
-            message.setTo(toEmail);
-            message.setSubject("🔐 Khôi phục mật khẩu - HUST Classroom");
-            message.setText(
-                "Xin chào,\n\n" +
-                "Bạn đã yêu cầu khôi phục mật khẩu cho tài khoản HUST Classroom.\n\n" +
-                "Mật khẩu mới của bạn là: " + newPassword + "\n\n" +
-                "Vui lòng đăng nhập và đổi mật khẩu ngay sau khi nhận được email này.\n\n" +
-                "Nếu bạn không yêu cầu khôi phục mật khẩu, vui lòng bỏ qua email này.\n\n" +
-                "Trân trọng,\n" +
-                "HUST Classroom Team"
-            );
-            
-            mailSender.send(message);
-            System.out.println("✅ Email đã được gửi thành công đến: " + toEmail);
-        } catch (Exception e) {
-            System.err.println("❌ Lỗi khi gửi email: " + e.getMessage());
-            e.printStackTrace();
-            // Fallback: log ra console
-            System.err.println("📧 Mật khẩu mới cho " + toEmail + ": " + newPassword);
+        } catch (MailException e) {
+            // Lỗi kết nối / xác thực: không email nào được gửi
+            messageEmails.values().forEach(email -> failures.put(email.getId(), e));
         }
+        System.out.println("✅ Đã gửi " + (messageEmails.size() - failures.size()) + "/" + emails.size() + " email qua một kết nối SMTP");
+        return failures;
+    }
+    
+    // Với mail.smtp.sendpartial=true, email nhóm BCC vẫn được gửi cho các địa chỉ hợp lệ và SendFailedException liệt kê
+    // địa chỉ đã gửi / chưa gửi / không hợp lệ. Trả về true nếu coi như đã gửi xong (chỉ còn địa chỉ không hợp lệ);
+    // nếu còn địa chỉ hợp lệ chưa gửi thì thu hẹp bcc về các địa chỉ đó để lần thử lại không gửi trùng cho người đã nhận
+    private boolean handlePartialSend(EmailOutbox email, Exception error) {
+        if (!(error instanceof SendFailedException sendFailed) || email.getBcc() == null
+                || isEmpty(sendFailed.getValidSentAddresses())) {
+            return false;
+        }
+        Set<String> unsent = toAddresses(sendFailed.getValidUnsentAddresses());
+        if (!isEmpty(sendFailed.getInvalidAddresses())) {
+            System.err.println("⚠️ Email " + email.getId() + " bỏ qua địa chỉ không hợp lệ: "
+                    + toAddresses(sendFailed.getInvalidAddresses()));
+        }
+        if (unsent.isEmpty()) {
+            return true;
+        }
+        List<String> remaining = Arrays.stream(email.getBcc().split(","))
+                .filter(address -> unsent.contains(address.trim().toLowerCase()))
+                .toList();
+        if (!remaining.isEmpty()) {
+            email.setBcc(String.join(",", remaining));
+        }
+        return false;
+    }
+    
+    private boolean isEmpty(Address[] addresses) {
+        return addresses == null || addresses.length == 0;
+    }
+    
+    private Set<String> toAddresses(Address[] addresses) {
+        if (addresses == null) {
+            return Set.of();
+        }
+        return Arrays.stream(addresses)
+                .map(address -> address instanceof InternetAddress internet ? internet.getAddress() : address.toString())
+                .map(address -> address.trim().toLowerCase())
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+    
+    private String truncateSubject(String subject) {
+        if (subject == null || subject.length() <= MAX_SUBJECT_LENGTH) {
+            return subject;
+        }
+        return subject.substring(0, MAX_SUBJECT_LENGTH - 3) + "...";
+    }
+    
+    private String bulkToAddress() {
+        if (bulkToAddress != null && !bulkToAddress.isEmpty()) {
+            return bulkToAddress;
+        }
+        return fromEmail != null && !fromEmail.isEmpty() ? fromEmail : "undisclosed-recipients:;";
     }
 }
-
-
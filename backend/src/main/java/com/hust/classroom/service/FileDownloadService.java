@@ -0,0 +1,162 @@
+package com.hust.classroom.service;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+@Service
+public class FileDownloadService {
+
+    // Ghi đoạn [offset, offset + length) của nội dung ra output
+    @FunctionalInterface
+    public interface RangeWriter {
+        void write(long offset, long length, OutputStream out) throws IOException;
+    }
+
+    public ResponseEntity<?> serve(RangeWriter content, long size, long lastModified, String etag, CacheControl cacheControl,
+                                   String contentType, String filename, HttpHeaders requestHeaders) {
+        return serve(content, size, lastModified, etag, cacheControl, contentType, filename, requestHeaders, HttpHeaders.EMPTY);
+    }
+
+    // responseHeaders: header bổ sung như Content-Encoding, Vary
+    public ResponseEntity<?> serve(RangeWriter content, long size, long lastModified, String etag, CacheControl cacheControl,
+                                   String contentType, String filename, HttpHeaders requestHeaders,
+                                   HttpHeaders responseHeaders) {
+        // Trả về 304 nếu client đã có bản mới nhất
+        if (isNotModified(requestHeaders, etag, lastModified)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .lastModified(lastModified)
+                    .cacheControl(cacheControl)
+                    .headers(responseHeaders)
+                    .build();
+        }
+
+        long start = 0;
+        long length = size;
+        boolean partial = false;
+
+        // Chỉ hỗ trợ một khoảng Range; nhiều khoảng thì trả về toàn bộ file
+        List<HttpRange> ranges = parseRanges(requestHeaders);
+        if (ranges.size() == 1 && isRangeApplicable(requestHeaders, etag, lastModified)) {
+            HttpRange range = ranges.get(0);
+            try {
+                start = range.getRangeStart(size);
+                long end = range.getRangeEnd(size);
+                length = end - start + 1;
+                partial = true;
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header(HttpHeaders.CONTENT_RANGE, "bytes */" + size)
+                        .build();
+            }
+        }
+
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(partial ? HttpStatus.PARTIAL_CONTENT : HttpStatus.OK)
+                .contentType(MediaType.parseMediaType(contentType))
+                .contentLength(length)
+                .eTag(etag)
+                .lastModified(lastModified)
+                .cacheControl(cacheControl)
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.inline().filename(filename, StandardCharsets.UTF_8).build().toString())
+                .headers(responseHeaders);
+        if (partial) {
+            builder.header(HttpHeaders.CONTENT_RANGE,
+                    "bytes " + start + "-" + (start + length - 1) + "/" + size);
+        }
+
+        return builder.body(transferBody(content, filename, start, length));
+    }
+
+    public String buildETag(long size, long lastModified) {
+        return "\"" + Long.toHexString(size) + "-" + Long.toHexString(lastModified) + "\"";
+    }
+
+    // Zero-copy cho file trên đĩa: FileChannel.transferTo thay vì đọc toàn bộ file lên heap
+    public RangeWriter fileContent(Path filePath) {
+        return (offset, length, out) -> {
+            try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+                WritableByteChannel target = Channels.newChannel(out);
+                long position = offset;
+                long remaining = length;
+                while (remaining > 0) {
+                    long transferred = channel.transferTo(position, remaining, target);
+                    if (transferred <= 0) {
+                        break;
+                    }
+                    position += transferred;
+                    remaining -= transferred;
+                }
+            }
+        };
+    }
+
+    private StreamingResponseBody transferBody(RangeWriter content, String filename, long start, long length) {
+        return outputStream -> {
+            try {
+                content.write(start, length, outputStream);
+                outputStream.flush();
+            } catch (IOException e) {
+                // Client ngắt kết nối giữa chừng (tua video, hủy tải) là chuyện bình thường
+                System.err.println("⚠️ Download interrupted for " + filename + ": " + e.getMessage());
+            }
+        };
+    }
+
+    private boolean isNotModified(HttpHeaders requestHeaders, String etag, long lastModified) {
+        List<String> ifNoneMatch = requestHeaders.getIfNoneMatch();
+        if (!ifNoneMatch.isEmpty()) {
+            // If-None-Match được ưu tiên hơn If-Modified-Since
+            return ifNoneMatch.stream().anyMatch(tag -> tag.equals("*") || stripWeak(tag).equals(etag));
+        }
+        long ifModifiedSince = requestHeaders.getIfModifiedSince();
+        return ifModifiedSince != -1 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    private boolean isRangeApplicable(HttpHeaders requestHeaders, String etag, long lastModified) {
+        String ifRange = requestHeaders.getFirst(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+        try {
+            long ifRangeDate = requestHeaders.getFirstDate(HttpHeaders.IF_RANGE);
+            return lastModified / 1000 <= ifRangeDate / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private List<HttpRange> parseRanges(HttpHeaders requestHeaders) {
+        try {
+            return requestHeaders.getRange();
+        } catch (IllegalArgumentException e) {
+            // Header Range sai cú pháp thì bỏ qua, trả về toàn bộ file
+            return List.of();
+        }
+    }
+
+    private String stripWeak(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+}
@@ -0,0 +1,60 @@
+package com.hust.classroom.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Thread pool riêng cho việc xử lý file sau upload (nén, tạo preview...).
+// Hàng đợi có giới hạn: khi đầy thì bỏ qua việc đó (sẽ được tạo lại khi có người tải file)
+// thay vì làm chậm request upload hay chiếm hết bộ nhớ
+@Service
+public class FileProcessingQueue {
+
+    private final ThreadPoolExecutor executor;
+
+    public FileProcessingQueue(MeterRegistry meterRegistry,
+                               @Value("${file.processing.threads:2}") int threads,
+                               @Value("${file.processing.queue-capacity:200}") int queueCapacity) {
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "file-processing-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        Gauge.builder("file.processing.queue.size", executor, pool -> pool.getQueue().size())
+                .register(meterRegistry);
+    }
+
+    // Trả về false nếu hàng đợi đã đầy
+    public boolean submit(String description, Runnable task) {
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    System.err.println("⚠️ [FileProcessing] " + description + " failed: " + e.getMessage());
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            System.err.println("⚠️ [FileProcessing] Queue full, skipped " + description);
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,202 @@
+package com.hust.classroom.service;
+
+import com.hust.classroom.entity.StoredFile;
+import com.hust.classroom.event.BlobDeletedEvent;
+import com.hust.classroom.event.FileStoredEvent;
+import com.hust.classroom.repository.FileBlobRepository;
+import com.hust.classroom.repository.StoredFileRepository;
+import com.hust.classroom.storage.BlobStorage;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.UUID;
+
+@Service
+@RequiredArgsConstructor
+public class FileStorageService {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileBlobRepository fileBlobRepository;
+    private final StoredFileRepository storedFileRepository;
+    private final BlobStorage blobStorage;
+    private final HotFileCache hotFileCache;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // Metadata file không đổi sau khi upload nên cache được trong bộ nhớ
+    private final Cache<String, StoredFile> metadataCache = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterAccess(Duration.ofHours(1))
+            .build();
+
+    @Value("${file.upload-dir:uploads}")
+    private String uploadDir;
+
+    // Ghi file ra thư mục tạm, đồng thời tính SHA-256; nội dung trùng chỉ lưu một lần
+    @Transactional
+    public StoredFile store(InputStream inputStream, String originalFilename, Integer uploaderId) throws IOException {
+        Path tempFile = createTempFile();
+        try {
+            MessageDigest digest = newSha256();
+            long size = 0;
+            try (OutputStream out = Files.newOutputStream(tempFile)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = inputStream.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                    size += read;
+                }
+            }
+            String sha256 = HexFormat.of().formatHex(digest.digest());
+            return commit(tempFile, sha256, size, originalFilename, uploaderId);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    // Đưa một file đã ghi xong trên đĩa (ví dụ upload theo chunk) vào kho nội dung.
+    // File nguồn chỉ bị xóa khi thành công; lỗi trước khi ghi vào kho thì file vẫn còn để thử lại
+    @Transactional(rollbackFor = IOException.class)
+    public StoredFile store(Path source, String originalFilename, Integer uploaderId) throws IOException {
+        MessageDigest digest = newSha256();
+        long size = 0;
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                size += buffer.remaining();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        String sha256 = HexFormat.of().formatHex(digest.digest());
+        StoredFile storedFile = commit(source, sha256, size, originalFilename, uploaderId);
+        // Blob đã có sẵn (trùng nội dung) thì commit không dùng tới file nguồn
+        Files.deleteIfExists(source);
+        return storedFile;
+    }
+
+    public Optional<StoredFile> findStoredFile(String filename) {
+        StoredFile cached = metadataCache.getIfPresent(filename);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<StoredFile> storedFile = storedFileRepository.findById(filename);
+        storedFile.ifPresent(file -> metadataCache.put(filename, file));
+        return storedFile;
+    }
+
+    public void evictMetadata(String filename) {
+        metadataCache.invalidate(filename);
+    }
+
+    // Mở nội dung theo URL /api/files/{filename}: file trong kho nội dung hoặc file cũ trong thư mục upload
+    public InputStream openFile(String filename) throws IOException {
+        Optional<StoredFile> storedFile = findStoredFile(filename);
+        if (storedFile.isPresent()) {
+            return blobStorage.openStream(storedFile.get().getSha256());
+        }
+        Path uploadPath = getUploadPath();
+        Path filePath = uploadPath.resolve(filename).normalize();
+        if (!filePath.startsWith(uploadPath)) {
+            throw new IOException("Truy cập file không hợp lệ: " + filename);
+        }
+        return Files.newInputStream(filePath);
+    }
+
+    // Xóa bản ghi file; blob chỉ bị xóa khỏi kho khi không còn file nào dùng chung nội dung.
+    // Trả về true nếu blob đã được xóa
+    @Transactional(rollbackFor = IOException.class)
+    public boolean delete(StoredFile storedFile) throws IOException {
+        String sha256 = storedFile.getSha256();
+        storedFileRepository.delete(storedFile);
+        storedFileRepository.flush();
+        evictMetadata(storedFile.getFilename());
+
+        fileBlobRepository.release(sha256);
+        if (fileBlobRepository.deleteIfUnreferenced(sha256) == 0) {
+            return false;
+        }
+        blobStorage.delete(sha256);
+        hotFileCache.invalidate(sha256);
+        eventPublisher.publishEvent(new BlobDeletedEvent(sha256));
+        return true;
+    }
+
+    public Path getUploadPath() {
+        return Paths.get(uploadDir).toAbsolutePath().normalize();
+    }
+
+    public Path getTempPath() throws IOException {
+        Path tmpDir = getUploadPath().resolve("tmp");
+        Files.createDirectories(tmpDir);
+        return tmpDir;
+    }
+
+    private StoredFile commit(Path tempFile, String sha256, long size, String originalFilename, Integer uploaderId) throws IOException {
+        // Tăng số tham chiếu (hoặc tạo mới blob) trong một câu lệnh.
+        // Làm trước khi kiểm tra kho để bộ dọn file không xóa mất blob ngay sau khi ta quyết định dùng lại
+        fileBlobRepository.acquire(sha256, size);
+
+        if (blobStorage.size(sha256).isEmpty()) {
+            blobStorage.put(sha256, tempFile);
+            hotFileCache.invalidate(sha256);
+        }
+
+        StoredFile storedFile = new StoredFile();
+        storedFile.setFilename(UUID.randomUUID().toString() + extensionOf(originalFilename));
+        storedFile.setSha256(sha256);
+        storedFile.setOriginalName(originalFilename);
+        storedFile.setContentType(MediaTypeFactory.getMediaType(originalFilename)
+                .map(MediaType::toString)
+                .orElse(MediaType.APPLICATION_OCTET_STREAM_VALUE));
+        storedFile.setSize(size);
+        storedFile.setUploaderId(uploaderId);
+        storedFile.setCreatedAt(LocalDateTime.now());
+        StoredFile saved = storedFileRepository.save(storedFile);
+        eventPublisher.publishEvent(new FileStoredEvent(saved));
+        return saved;
+    }
+
+    private Path createTempFile() throws IOException {
+        return Files.createTempFile(getTempPath(), "upload-", ".part");
+    }
+
+    private String extensionOf(String originalFilename) {
+        if (originalFilename != null && originalFilename.contains(".")) {
+            return originalFilename.substring(originalFilename.lastIndexOf("."));
+        }
+        return "";
+    }
+
+    private MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 không khả dụng", e);
+        }
+    }
+}
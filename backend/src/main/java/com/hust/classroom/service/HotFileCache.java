@@ -0,0 +1,73 @@
+package com.hust.classroom.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hust.classroom.storage.BlobStorage;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+// Cache nội dung các file nhỏ/vừa được tải nhiều (ví dụ tài liệu cả lớp cùng tải ngay sau khi đăng).
+// Giới hạn theo tổng số byte; Caffeine dùng W-TinyLFU nên file hiếm khi tải không đẩy được file "nóng" ra.
+@Service
+public class HotFileCache {
+
+    private final BlobStorage blobStorage;
+    private final Cache<String, byte[]> cache;
+    private final long maxEntryBytes;
+
+    public HotFileCache(BlobStorage blobStorage,
+                        MeterRegistry meterRegistry,
+                        @Value("${file.hot-cache.max-size:64MB}") DataSize maxSize,
+                        @Value("${file.hot-cache.max-entry-size:2MB}") DataSize maxEntrySize) {
+        this.blobStorage = blobStorage;
+        this.maxEntryBytes = maxEntrySize.toBytes();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((String key, byte[] value) -> value.length)
+                .recordStats()
+                .build();
+
+        // hit/miss/eviction: cache.gets, cache.evictions...; dung lượng đang dùng: file.hot_cache.bytes
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "hotFiles");
+        Gauge.builder("file.hot_cache.bytes", cache, c -> c.policy().eviction()
+                        .flatMap(eviction -> eviction.weightedSize())
+                        .orElse(0L))
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    // File lớn không vào cache, vẫn đi đường zero-copy từ kho blob
+    public boolean isCacheable(long size) {
+        return size <= maxEntryBytes;
+    }
+
+    // Nhiều request cùng lúc cho một blob chưa có trong cache chỉ đọc kho một lần
+    public byte[] get(String blobKey) throws IOException {
+        try {
+            return cache.get(blobKey, this::load);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Gọi khi blob bị ghi lại hoặc xóa khỏi kho
+    public void invalidate(String blobKey) {
+        cache.invalidate(blobKey);
+    }
+
+    private byte[] load(String blobKey) {
+        try (InputStream in = blobStorage.openStream(blobKey)) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.hust.classroom.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hust.classroom.dto.ClassJoinInfo;
+import com.hust.classroom.repository.ClassRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+// Mã tham gia lớp học.
+// Cấp mã: lấy số tiếp theo của sequence rồi hoán vị bằng mạng Feistel có khóa trên miền 40 bit
+// (đúng 8 ký tự base32). Hoán vị là song ánh nên hai số khác nhau luôn cho hai mã khác nhau,
+// không cần thử ngẫu nhiên rồi tra DB; có khóa nên mã liên tiếp trông không liên quan tới nhau.
+// Tra mã: cache mã -> lớp có giới hạn, đợt sinh viên tham gia lớp đầu kỳ gần như không chạm bảng classes
+@Service
+public class JoinCodeService {
+
+    private static final String SEQUENCE = "class_join_code_seq";
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray(); // Crockford base32
+    private static final int CODE_LENGTH = 8;
+    private static final int HALF_BITS = 20;
+    private static final long HALF_MASK = (1L << HALF_BITS) - 1;
+    private static final int ROUNDS = 4;
+    private static final int MIN_SECRET_LENGTH = 16;
+    private static final int MAX_ALLOCATE_ATTEMPTS = 10;
+    private static final String DEV_SECRET = "dev-only-join-code-secret-change-me"; // Giá trị mặc định trong application.properties
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ClassRepository classRepository;
+    private final long[] roundKeys;
+
+    // Mã không tồn tại cũng được cache (Optional rỗng) để dò mã bừa không xuống DB
+    private final Cache<String, Optional<ClassJoinInfo>> codeCache;
+
+    // Không đổi secret sau khi đã cấp mã: hoán vị mới có thể sinh lại mã đã dùng.
+    // Secret mặc định nằm trong mã nguồn: ai có mã nguồn đều tính được mã của mọi lớp, chỉ dùng khi phát triển
+    public JoinCodeService(JdbcTemplate jdbcTemplate,
+                           ClassRepository classRepository,
+                           MeterRegistry meterRegistry,
+                           @Value("${class.join-code.secret}") String secret,
+                           @Value("${class.join-code.cache-size:20000}") long cacheSize,
+                           @Value("${class.join-code.cache-ttl-minutes:60}") long cacheTtlMinutes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.classRepository = classRepository;
+        if (secret == null || secret.isBlank() || secret.length() < MIN_SECRET_LENGTH) {
+            throw new IllegalStateException("class.join-code.secret (biến môi trường CLASS_JOIN_CODE_SECRET) phải có ít nhất "
+                    + MIN_SECRET_LENGTH + " ký tự");
+        }
+        if (DEV_SECRET.equals(secret)) {
+            System.err.println("⚠️ [JoinCode] Đang dùng class.join-code.secret mặc định (chỉ dành cho môi trường phát triển)! "
+                    + "Đặt biến môi trường CLASS_JOIN_CODE_SECRET trước khi chạy thật");
+        }
+        this.roundKeys = deriveRoundKeys(secret);
+        this.codeCache = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(Duration.ofMinutes(cacheTtlMinutes))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, codeCache, "joinCodes");
+    }
+
+    @PostConstruct
+    public void ensureSequence() {
+        jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS " + SEQUENCE);
+    }
+
+    // Mã sinh ra không trùng nhau, nhưng có thể trùng mã giáo viên tự đặt: khi đó lấy số tiếp theo
+    public String allocate() {
+        for (int attempt = 0; attempt < MAX_ALLOCATE_ATTEMPTS; attempt++) {
+            Long next = jdbcTemplate.queryForObject("SELECT nextval('" + SEQUENCE + "')", Long.class);
+            String code = encode(permute(next));
+            if (!classRepository.existsByMaThamGia(code)) {
+                return code;
+            }
+            System.err.println("⚠️ [JoinCode] Generated code " + code + " already taken, trying next value");
+        }
+        throw new RuntimeException("Không tạo được mã tham gia, vui lòng thử lại!");
+    }
+
+    public Optional<ClassJoinInfo> findByCode(String maThamGia) {
+        return codeCache.get(maThamGia, classRepository::findJoinInfoByMaThamGia);
+    }
+
+    // Gọi khi tạo / sửa / xóa lớp; bỏ cache sau khi transaction commit để request khác không nạp lại dữ liệu cũ
+    public void evictAfterCommit(String... codes) {
+        List<String> keys = Arrays.stream(codes).filter(code -> code != null).toList();
+        if (keys.isEmpty()) {
+            return;
+        }
+        codeCache.invalidateAll(keys);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    codeCache.invalidateAll(keys);
+                }
+            });
+        }
+    }
+
+    private long permute(long value) {
+        long left = (value >>> HALF_BITS) & HALF_MASK;
+        long right = value & HALF_MASK;
+        for (int round = 0; round < ROUNDS; round++) {
+            long mixed = left ^ (mix(right ^ roundKeys[round]) & HALF_MASK);
+            left = right;
+            right = mixed;
+        }
+        return (left << HALF_BITS) | right;
+    }
+
+    private String encode(long value) {
+        char[] code = new char[CODE_LENGTH];
+        for (int i = CODE_LENGTH - 1; i >= 0; i--) {
+            code[i] = ALPHABET[(int) (value & 31)];
+            value >>>= 5;
+        }
+        return new String(code);
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    private static long[] deriveRoundKeys(String secret) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(secret.getBytes(StandardCharsets.UTF_8));
+            ByteBuffer buffer = ByteBuffer.wrap(digest);
+            long[] keys = new long[ROUNDS];
+            for (int i = 0; i < ROUNDS; i++) {
+                keys[i] = buffer.getLong();
+            }
+            return keys;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 không khả dụng", e);
+        }
+    }
+}
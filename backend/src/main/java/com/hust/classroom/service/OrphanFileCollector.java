@@ -0,0 +1,190 @@
+package com.hust.classroom.service;
+
+import com.hust.classroom.entity.StoredFile;
+import com.hust.classroom.repository.StoredFileRepository;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Dọn các file upload không còn được tham chiếu (bài nộp, bài tập, bài đăng, avatar đã bị xóa).
+// Duyệt theo từng trang nhỏ, chỉ xóa file cũ hơn thời gian ân hạn để không đụng vào file vừa upload
+// mà client chưa kịp gắn vào bài nộp/bài đăng.
+@Service
+@RequiredArgsConstructor
+public class OrphanFileCollector {
+
+    private static final String FILE_URL_PREFIX = "/api/files/";
+    private static final int MAX_SAMPLE = 100;
+
+    private final StoredFileRepository storedFileRepository;
+    private final FileStorageService fileStorageService;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    @Value("${file.gc.enabled:true}")
+    private boolean enabled;
+
+    @Value("${file.gc.dry-run:false}")
+    private boolean defaultDryRun;
+
+    @Value("${file.gc.grace-hours:168}")
+    private long graceHours;
+
+    @Value("${file.gc.page-size:500}")
+    private int pageSize;
+
+    @Data
+    public static class Report {
+        private boolean dryRun;
+        private long scannedFiles;
+        private long orphanFiles;
+        private long reclaimedBytes;
+        private long deletedBlobs;
+        private List<String> sample = new ArrayList<>(); // Tối đa 100 file mồ côi đầu tiên
+    }
+
+    @Scheduled(initialDelayString = "${file.gc.initial-delay-ms:600000}",
+               fixedDelayString = "${file.gc.interval-ms:21600000}")
+    public void scheduledCollect() {
+        if (!enabled) {
+            return;
+        }
+        collect(defaultDryRun);
+    }
+
+    public Report collect(boolean dryRun) {
+        if (!running.compareAndSet(false, true)) {
+            throw new RuntimeException("Bộ dọn file đang chạy, vui lòng thử lại sau!");
+        }
+        try {
+            Report report = new Report();
+            report.setDryRun(dryRun);
+            LocalDateTime cutoff = LocalDateTime.now().minusHours(graceHours);
+            collectStoredFiles(cutoff, dryRun, report);
+            collectLegacyFiles(cutoff, dryRun, report);
+            System.out.println("✅ [GC] " + (dryRun ? "Dry run: " : "") + report.getOrphanFiles() + "/" + report.getScannedFiles()
+                    + " orphan files, " + report.getReclaimedBytes() + " bytes, " + report.getDeletedBlobs() + " blobs deleted");
+            return report;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    // File trong kho nội dung (bảng files)
+    private void collectStoredFiles(LocalDateTime cutoff, boolean dryRun, Report report) {
+        String after = "";
+        while (true) {
+            List<StoredFile> page = storedFileRepository.findPageCreatedBefore(after, cutoff, PageRequest.of(0, pageSize));
+            if (page.isEmpty()) {
+                break;
+            }
+            after = page.get(page.size() - 1).getFilename();
+
+            List<String> urls = new ArrayList<>();
+            for (StoredFile file : page) {
+                urls.add(FILE_URL_PREFIX + file.getFilename());
+            }
+            Set<String> referenced = new HashSet<>(storedFileRepository.findReferencedPaths(urls));
+
+            for (StoredFile file : page) {
+                report.setScannedFiles(report.getScannedFiles() + 1);
+                if (referenced.contains(FILE_URL_PREFIX + file.getFilename())) {
+                    continue;
+                }
+                recordOrphan(report, file.getFilename());
+                if (dryRun) {
+                    // Ước lượng: chưa trừ phần nội dung còn được file khác dùng chung
+                    report.setReclaimedBytes(report.getReclaimedBytes() + (file.getSize() != null ? file.getSize() : 0));
+                    continue;
+                }
+                try {
+                    if (fileStorageService.delete(file)) {
+                        report.setDeletedBlobs(report.getDeletedBlobs() + 1);
+                        report.setReclaimedBytes(report.getReclaimedBytes() + (file.getSize() != null ? file.getSize() : 0));
+                    }
+                } catch (Exception e) {
+                    System.err.println("⚠️ [GC] Could not delete " + file.getFilename() + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // File cũ nằm trực tiếp trong thư mục upload (trước khi có kho nội dung)
+    private void collectLegacyFiles(LocalDateTime cutoff, boolean dryRun, Report report) {
+        Path uploadPath = fileStorageService.getUploadPath();
+        if (!Files.isDirectory(uploadPath)) {
+            return;
+        }
+        Instant cutoffInstant = cutoff.atZone(ZoneId.systemDefault()).toInstant();
+
+        List<Path> batch = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(uploadPath)) {
+            for (Path path : stream) {
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                if (!attributes.isRegularFile() || attributes.lastModifiedTime().toInstant().isAfter(cutoffInstant)) {
+                    continue;
+                }
+                batch.add(path);
+                if (batch.size() >= pageSize) {
+                    collectLegacyBatch(batch, dryRun, report);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                collectLegacyBatch(batch, dryRun, report);
+            }
+        } catch (IOException e) {
+            System.err.println("⚠️ [GC] Could not scan upload directory: " + e.getMessage());
+        }
+    }
+
+    private void collectLegacyBatch(List<Path> batch, boolean dryRun, Report report) {
+        List<String> urls = new ArrayList<>();
+        for (Path path : batch) {
+            urls.add(FILE_URL_PREFIX + path.getFileName());
+        }
+        Set<String> referenced = new HashSet<>(storedFileRepository.findReferencedPaths(urls));
+
+        for (Path path : batch) {
+            report.setScannedFiles(report.getScannedFiles() + 1);
+            String filename = path.getFileName().toString();
+            if (referenced.contains(FILE_URL_PREFIX + filename)) {
+                continue;
+            }
+            recordOrphan(report, filename);
+            try {
+                long size = Files.size(path);
+                if (!dryRun) {
+                    Files.deleteIfExists(path);
+                }
+                report.setReclaimedBytes(report.getReclaimedBytes() + size);
+            } catch (IOException e) {
+                System.err.println("⚠️ [GC] Could not delete " + filename + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void recordOrphan(Report report, String filename) {
+        report.setOrphanFiles(report.getOrphanFiles() + 1);
+        if (report.getSample().size() < MAX_SAMPLE) {
+            report.getSample().add(filename);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.hust.classroom.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Hash mật khẩu bằng BCrypt trên thread pool riêng có giới hạn.
+// Giờ cao điểm (cả trường đăng nhập lúc thi) hàng đợi đầy thì từ chối ngay (503)
+// thay vì chiếm hết thread Tomcat của các API khác
+@Service
+public class PasswordHashingService {
+
+    private static final String BCRYPT_PREFIX = "$2";
+
+    private final BCryptPasswordEncoder encoder;
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMs;
+
+    private final Timer hashTimer;
+    private final Counter rejectedCounter;
+
+    // Hàng đợi đầy hoặc chờ quá lâu
+    public static class OverloadedException extends RuntimeException {
+        public OverloadedException() {
+            super("Hệ thống đang quá tải, vui lòng thử lại sau ít giây!");
+        }
+    }
+
+    public PasswordHashingService(MeterRegistry meterRegistry,
+                                  @Value("${auth.password.bcrypt-cost:10}") int cost,
+                                  @Value("${auth.password.hash-threads:0}") int threads,
+                                  @Value("${auth.password.queue-capacity:200}") int queueCapacity,
+                                  @Value("${auth.password.timeout-ms:5000}") long timeoutMs) {
+        this.encoder = new BCryptPasswordEncoder(cost);
+        this.timeoutMs = timeoutMs;
+
+        // Mặc định số thread = số CPU (BCrypt thuần tính toán)
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        this.hashTimer = Timer.builder("auth.password.hash").register(meterRegistry);
+        this.rejectedCounter = Counter.builder("auth.password.rejected").register(meterRegistry);
+        Gauge.builder("auth.password.queue.size", executor, pool -> pool.getQueue().size()).register(meterRegistry);
+        Gauge.builder("auth.password.active", executor, ThreadPoolExecutor::getActiveCount).register(meterRegistry);
+    }
+
+    public String hash(String rawPassword) {
+        return submit(() -> encoder.encode(rawPassword));
+    }
+
+    // Hỗ trợ cả mật khẩu cũ lưu dạng plaintext (trước khi có hash)
+    public boolean matches(String rawPassword, String storedPassword) {
+        if (rawPassword == null || storedPassword == null) {
+            return false;
+        }
+        if (!isHashed(storedPassword)) {
+            return MessageDigest.isEqual(rawPassword.getBytes(StandardCharsets.UTF_8),
+                    storedPassword.getBytes(StandardCharsets.UTF_8));
+        }
+        return submit(() -> encoder.matches(rawPassword, storedPassword));
+    }
+
+    // Mật khẩu plaintext cũ hoặc hash với cost thấp hơn cấu hình hiện tại cần hash lại
+    public boolean needsRehash(String storedPassword) {
+        return !isHashed(storedPassword) || encoder.upgradeEncoding(storedPassword);
+    }
+
+    private boolean isHashed(String storedPassword) {
+        return storedPassword.startsWith(BCRYPT_PREFIX);
+    }
+
+    private <T> T submit(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(() -> hashTimer.recordCallable(task));
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            throw new OverloadedException();
+        }
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rejectedCounter.increment();
+            throw new OverloadedException();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OverloadedException();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Lỗi khi hash mật khẩu", e.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -21,6 +21,8 @@ public class PostService {
     private final PostRepository postRepository;
     private final ClassRepository classRepository;
     private final UserRepository userRepository;
+    private final AnnouncementMailService announcementMailService;
+    private final ClassDashboardService classDashboardService;
     
     public List<Post> getPostsByClassId(Integer classId) {
         return postRepository.findByClassId(classId);
@@ -41,15 +43,19 @@ public class PostService {
         post.setFilePath(filePath);
         post.setCreatedAt(LocalDateTime.now());
         
-        return postRepository.save(post);
+        Post saved = postRepository.save(post);
+        // Email thông báo cho sinh viên trong lớp (gửi nền qua outbox)
+        announcementMailService.announcePost(saved);
+        classDashboardService.evictAfterCommit(classId);
+        return saved;
     }
     
     @Transactional
     public void deletePost(Integer postId) {
-        if (!postRepository.existsById(postId)) {
-            throw new RuntimeException("Không tìm thấy bài đăng!");
-        }
-        postRepository.deleteById(postId);
+        Post post = postRepository.findById(postId)
+                .orElseThrow(() -> new RuntimeException("Không tìm thấy bài đăng!"));
+        postRepository.delete(post);
+        classDashboardService.evictAfterCommit(post.getClassID());
     }
 }
 
@@ -0,0 +1,249 @@
+package com.hust.classroom.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hust.classroom.entity.StoredFile;
+import com.hust.classroom.event.BlobDeletedEvent;
+import com.hust.classroom.event.FileStoredEvent;
+import com.hust.classroom.storage.BlobStorage;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Ảnh thu nhỏ cho file ảnh và trang đầu của file PDF, tạo nền sau khi upload
+// và lưu cạnh blob gốc với khóa {sha256}.preview.jpg
+@Service
+public class PreviewService {
+
+    public static final String PREVIEW_SUFFIX = ".preview.jpg";
+    public static final String PREVIEW_CONTENT_TYPE = "image/jpeg";
+
+    private static final Set<String> IMAGE_TYPES = Set.of("image/jpeg", "image/png", "image/gif", "image/bmp");
+    private static final String PDF_TYPE = "application/pdf";
+
+    private final BlobStorage blobStorage;
+    private final FileStorageService fileStorageService;
+    private final FileProcessingQueue fileProcessingQueue;
+
+    // sha256 -> kích thước preview (rỗng nếu không tạo được)
+    private final Cache<String, OptionalLong> previewSizes = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .build();
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    @Value("${file.preview.width:320}")
+    private int previewWidth;
+
+    @Value("${file.preview.max-source-size:30MB}")
+    private DataSize maxSourceSize;
+
+    public PreviewService(BlobStorage blobStorage,
+                          FileStorageService fileStorageService,
+                          FileProcessingQueue fileProcessingQueue) {
+        this.blobStorage = blobStorage;
+        this.fileStorageService = fileStorageService;
+        this.fileProcessingQueue = fileProcessingQueue;
+    }
+
+    @TransactionalEventListener
+    public void onFileStored(FileStoredEvent event) {
+        schedule(event.getStoredFile());
+    }
+
+    @TransactionalEventListener
+    public void onBlobDeleted(BlobDeletedEvent event) {
+        String sha256 = event.getSha256();
+        previewSizes.invalidate(sha256);
+        try {
+            blobStorage.delete(previewKey(sha256));
+        } catch (IOException e) {
+            System.err.println("⚠️ [Preview] Could not delete preview of " + sha256 + ": " + e.getMessage());
+        }
+    }
+
+    public boolean isPreviewable(StoredFile storedFile) {
+        if (storedFile.getSize() == null || storedFile.getSize() > maxSourceSize.toBytes()) {
+            return false;
+        }
+        String contentType = baseType(storedFile.getContentType());
+        return IMAGE_TYPES.contains(contentType) || PDF_TYPE.equals(contentType);
+    }
+
+    // Kích thước preview nếu đã có; nếu chưa có thì xếp lịch tạo
+    public OptionalLong findPreviewSize(StoredFile storedFile) throws IOException {
+        String sha256 = storedFile.getSha256();
+        OptionalLong cached = previewSizes.getIfPresent(sha256);
+        if (cached != null) {
+            return cached;
+        }
+        OptionalLong size = blobStorage.size(previewKey(sha256));
+        if (size.isPresent()) {
+            previewSizes.put(sha256, size);
+        } else {
+            schedule(storedFile);
+        }
+        return size;
+    }
+
+    // Đã thử tạo nhưng không được (file hỏng, định dạng không đọc được)
+    public boolean isPreviewFailed(StoredFile storedFile) {
+        OptionalLong cached = previewSizes.getIfPresent(storedFile.getSha256());
+        return cached != null && cached.isEmpty();
+    }
+
+    public String previewKey(String sha256) {
+        return sha256 + PREVIEW_SUFFIX;
+    }
+
+    private void schedule(StoredFile storedFile) {
+        if (!isPreviewable(storedFile)) {
+            return;
+        }
+        String sha256 = storedFile.getSha256();
+        if (previewSizes.getIfPresent(sha256) != null || !inFlight.add(sha256)) {
+            return;
+        }
+        String contentType = baseType(storedFile.getContentType());
+        boolean submitted = fileProcessingQueue.submit("preview " + sha256, () -> {
+            try {
+                generate(sha256, contentType);
+            } catch (IOException e) {
+                previewSizes.put(sha256, OptionalLong.empty());
+                throw new UncheckedIOException(e);
+            } catch (RuntimeException e) {
+                // ImageIO / PDFBox có thể ném RuntimeException với file hỏng: cũng đánh dấu thất bại để không tạo lại mãi
+                previewSizes.put(sha256, OptionalLong.empty());
+                throw e;
+            } finally {
+                inFlight.remove(sha256);
+            }
+        });
+        if (!submitted) {
+            inFlight.remove(sha256);
+        }
+    }
+
+    private void generate(String sha256, String contentType) throws IOException {
+        // Chép blob ra file tạm: PDFBox và ImageIO đọc ngẫu nhiên từ file, không cần giữ cả file trên heap
+        Path sourceFile = Files.createTempFile(fileStorageService.getTempPath(), "preview-src-", ".part");
+        Path previewFile = Files.createTempFile(fileStorageService.getTempPath(), "preview-", ".part");
+        try {
+            try (InputStream in = blobStorage.openStream(sha256)) {
+                Files.copy(in, sourceFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            BufferedImage source = PDF_TYPE.equals(contentType) ? renderFirstPage(sourceFile) : readImage(sourceFile);
+            if (source == null) {
+                previewSizes.put(sha256, OptionalLong.empty());
+                return;
+            }
+            writeJpeg(scale(source), previewFile);
+
+            long size = Files.size(previewFile);
+            blobStorage.put(previewKey(sha256), previewFile);
+            previewSizes.put(sha256, OptionalLong.of(size));
+            System.out.println("✅ [Preview] " + sha256 + " (" + contentType + "): " + size + " bytes");
+        } finally {
+            Files.deleteIfExists(sourceFile);
+            Files.deleteIfExists(previewFile);
+        }
+    }
+
+    private BufferedImage renderFirstPage(Path pdfFile) throws IOException {
+        try (PDDocument document = Loader.loadPDF(pdfFile.toFile())) {
+            if (document.getNumberOfPages() == 0) {
+                return null;
+            }
+            // Độ phân giải vừa đủ cho ảnh rộng previewWidth (trang A4 rộng 595pt)
+            float pageWidth = document.getPage(0).getMediaBox().getWidth();
+            float scale = Math.min(1f, previewWidth * 2f / Math.max(pageWidth, 1f));
+            return new PDFRenderer(document).renderImage(0, scale, ImageType.RGB);
+        }
+    }
+
+    // Ảnh lớn được đọc với subsampling nên không phải giải nén cả ảnh gốc vào bộ nhớ
+    private BufferedImage readImage(Path imageFile) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(imageFile.toFile())) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, width / (previewWidth * 2));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private BufferedImage scale(BufferedImage source) {
+        int width = Math.min(previewWidth, source.getWidth());
+        int height = Math.max(1, (int) Math.round((double) source.getHeight() * width / source.getWidth()));
+
+        // JPEG không có kênh alpha: vẽ lên nền trắng
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    private void writeJpeg(BufferedImage image, Path target) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(0.8f);
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(target.toFile())) {
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private String baseType(String contentType) {
+        return contentType == null ? "" : contentType.split(";")[0].trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,175 @@
+package com.hust.classroom.service;
+
+import com.hust.classroom.repository.ClassRepository;
+import com.hust.classroom.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Xóa nền lớp học / người dùng có rất nhiều dữ liệu.
+// Dữ liệu con được xóa theo từng đợt nhỏ, mỗi đợt một transaction ngắn, nên không giữ khóa trên hàng nghìn dòng
+// cùng lúc; bước cuối gọi deleteClass / deleteUser (lúc này gần như không còn gì để xóa). Tiến độ xem qua jobId
+@Service
+public class PurgeService {
+
+    private static final Duration JOB_RETENTION = Duration.ofHours(1);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ClassRepository classRepository;
+    private final UserRepository userRepository;
+    private final ClassService classService;
+    private final UserService userService;
+    private final ExecutorService executor;
+
+    private final Map<String, PurgeJob> jobs = new ConcurrentHashMap<>();
+
+    @Value("${purge.chunk-size:1000}")
+    private int chunkSize;
+
+    // Bảng con cần xóa: tên bảng, cột khóa chính, cột tham chiếu tới lớp / người dùng
+    private record ChildTable(String table, String idColumn, String ownerColumn) {
+    }
+
+    private static final List<ChildTable> CLASS_CHILDREN = List.of(
+            new ChildTable("submissions", "submission_id", "class_id"),
+            new ChildTable("posts", "post_id", "class_id"),
+            new ChildTable("assignments", "assignment_id", "class_id"),
+            new ChildTable("attendance", "id", "class_id"),
+            new ChildTable("class_students", "id", "class_id"));
+
+    private static final List<ChildTable> USER_CHILDREN = List.of(
+            new ChildTable("submissions", "submission_id", "student_id"),
+            new ChildTable("notifications", "id", "user_id"),
+            new ChildTable("posts", "post_id", "author_id"),
+            new ChildTable("class_students", "id", "student_id"));
+
+    @Getter
+    public static class PurgeJob {
+        public enum Status { RUNNING, COMPLETED, FAILED }
+
+        private final String jobId = UUID.randomUUID().toString();
+        private final String type;
+        private final Integer targetId;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private final Map<String, Long> deletedRows = new ConcurrentHashMap<>();
+        private volatile Status status = Status.RUNNING;
+        private volatile String currentTable;
+        private volatile LocalDateTime finishedAt;
+        private volatile String error;
+
+        private PurgeJob(String type, Integer targetId) {
+            this.type = type;
+            this.targetId = targetId;
+        }
+
+        public long getTotalDeleted() {
+            return deletedRows.values().stream().mapToLong(Long::longValue).sum();
+        }
+
+        private boolean isExpired() {
+            return finishedAt != null && finishedAt.isBefore(LocalDateTime.now().minus(JOB_RETENTION));
+        }
+    }
+
+    public PurgeService(JdbcTemplate jdbcTemplate,
+                        PlatformTransactionManager transactionManager,
+                        ClassRepository classRepository,
+                        UserRepository userRepository,
+                        ClassService classService,
+                        UserService userService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.classRepository = classRepository;
+        this.userRepository = userRepository;
+        this.classService = classService;
+        this.userService = userService;
+
+        // Một thread: các lần xóa lớn chạy lần lượt, không tranh nhau pool kết nối DB
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "purge-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public PurgeJob purgeClass(Integer classId) {
+        if (!classRepository.existsById(classId)) {
+            throw new RuntimeException("Không tìm thấy lớp học!");
+        }
+        return start(new PurgeJob("class", classId), CLASS_CHILDREN, () -> classService.deleteClass(classId));
+    }
+
+    public PurgeJob purgeUser(Integer userId) {
+        if (!userRepository.existsById(userId)) {
+            throw new RuntimeException("Không tìm thấy người dùng!");
+        }
+        // deleteUser kiểm tra giáo viên còn lớp ở bước cuối; kiểm tra trước để không xóa dở dữ liệu
+        if (!classRepository.findIdsByGiaoVienId(userId).isEmpty()) {
+            throw new RuntimeException("Không thể xóa giáo viên này! Vui lòng xóa hoặc chuyển giao các lớp học trước.");
+        }
+        return start(new PurgeJob("user", userId), USER_CHILDREN, () -> userService.deleteUser(userId));
+    }
+
+    public Optional<PurgeJob> getJob(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    private PurgeJob start(PurgeJob job, List<ChildTable> children, Runnable finalStep) {
+        jobs.values().removeIf(PurgeJob::isExpired);
+        jobs.put(job.getJobId(), job);
+        executor.execute(() -> run(job, children, finalStep));
+        return job;
+    }
+
+    private void run(PurgeJob job, List<ChildTable> children, Runnable finalStep) {
+        try {
+            for (ChildTable child : children) {
+                job.currentTable = child.table();
+                // Tên bảng / cột là hằng số trong code, không đến từ request
+                String sql = "DELETE FROM " + child.table() + " WHERE " + child.idColumn() + " IN (" +
+                        "SELECT " + child.idColumn() + " FROM " + child.table() +
+                        " WHERE " + child.ownerColumn() + " = ? LIMIT ?)";
+                int deleted;
+                do {
+                    deleted = transactionTemplate.execute(status ->
+                            jdbcTemplate.update(sql, job.getTargetId(), chunkSize));
+                    job.deletedRows.merge(child.table(), (long) deleted, Long::sum);
+                } while (deleted >= chunkSize);
+            }
+
+            job.currentTable = null;
+            finalStep.run();
+            job.status = PurgeJob.Status.COMPLETED;
+            System.out.println("✅ [Purge] " + job.getType() + " " + job.getTargetId() + ": đã xóa "
+                    + job.getTotalDeleted() + " bản ghi liên quan");
+        } catch (Exception e) {
+            job.error = e.getMessage();
+            job.status = PurgeJob.Status.FAILED;
+            System.err.println("❌ [Purge] " + job.getType() + " " + job.getTargetId() + " failed: " + e.getMessage());
+        } finally {
+            job.finishedAt = LocalDateTime.now();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,190 @@
+package com.hust.classroom.service;
+
+import com.hust.classroom.config.JwtUtil;
+import com.hust.classroom.config.TokenPrincipal;
+import com.hust.classroom.dto.AuthResponse;
+import com.hust.classroom.entity.RefreshToken;
+import com.hust.classroom.entity.RevokedAccessToken;
+import com.hust.classroom.entity.User;
+import com.hust.classroom.repository.RefreshTokenRepository;
+import com.hust.classroom.repository.RevokedAccessTokenRepository;
+import com.hust.classroom.repository.UserRepository;
+import com.hust.classroom.security.TokenRevocationList;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+// Access token ngắn hạn + refresh token xoay vòng (mỗi lần refresh cấp token mới và thu hồi token cũ)
+@Service
+@RequiredArgsConstructor
+public class RefreshTokenService {
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final RevokedAccessTokenRepository revokedAccessTokenRepository;
+    private final UserRepository userRepository;
+    private final JwtUtil jwtUtil;
+    private final TokenRevocationList tokenRevocationList;
+
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    // Refresh token đã xoay vòng bị dùng lại; không rollback để việc thu hồi vẫn được lưu
+    public static class TokenReuseException extends RuntimeException {
+        public TokenReuseException() {
+            super("Phiên đăng nhập đã bị thu hồi, vui lòng đăng nhập lại!");
+        }
+    }
+
+    @Value("${jwt.refresh-expiration-days:30}")
+    private long refreshExpirationDays;
+
+    // Cấp access token + refresh token mới cho user (đăng nhập, đăng ký)
+    @Transactional
+    public AuthResponse issue(User user) {
+        String refreshToken = newRefreshToken();
+        String accessTokenId = UUID.randomUUID().toString();
+        LocalDateTime now = LocalDateTime.now();
+
+        RefreshToken entity = new RefreshToken();
+        entity.setTokenHash(hash(refreshToken));
+        entity.setUserId(user.getId());
+        entity.setAccessTokenId(accessTokenId);
+        entity.setCreatedAt(now);
+        entity.setExpiresAt(now.plusDays(refreshExpirationDays));
+        entity.setAccessExpiresAt(now.plus(Duration.ofMillis(jwtUtil.getExpiration())));
+        refreshTokenRepository.save(entity);
+
+        AuthResponse response = new AuthResponse();
+        response.setToken(jwtUtil.generateToken(user.getId(), user.getEmail(), user.getRole().name(), accessTokenId));
+        response.setRefreshToken(refreshToken);
+        response.setUser(AuthResponse.UserResponse.fromUser(user));
+        return response;
+    }
+
+    @Transactional(noRollbackFor = TokenReuseException.class)
+    public AuthResponse refresh(String refreshToken) {
+        // Khóa dòng token tới hết transaction: nếu không, hai refresh đồng thời cùng qua được kiểm tra
+        // "chưa xoay vòng" và tạo hai nhánh token, vô hiệu hóa việc phát hiện dùng lại
+        RefreshToken current = refreshTokenRepository.findByIdForUpdate(hash(refreshToken))
+                .orElseThrow(() -> new RuntimeException("Refresh token không hợp lệ!"));
+
+        if (current.getRevokedAt() != null) {
+            // Token đã xoay vòng bị dùng lại: có thể đã bị lộ, thu hồi mọi phiên của user
+            System.err.println("⚠️ [Auth] Refresh token reuse detected for user " + current.getUserId());
+            revokeAll(current.getUserId());
+            throw new TokenReuseException();
+        }
+        if (current.getExpiresAt().isBefore(LocalDateTime.now())) {
+            throw new RuntimeException("Phiên đăng nhập đã hết hạn, vui lòng đăng nhập lại!");
+        }
+
+        User user = userRepository.findById(current.getUserId())
+                .orElseThrow(() -> new RuntimeException("Không tìm thấy người dùng!"));
+
+        AuthResponse response = issue(user);
+        current.setRevokedAt(LocalDateTime.now());
+        current.setReplacedBy(hash(response.getRefreshToken()));
+        refreshTokenRepository.save(current);
+        return response;
+    }
+
+    // Đăng xuất: thu hồi refresh token và access token đi kèm.
+    // Mọi jti bị thu hồi đều có dấu vết trong DB (dòng refresh_tokens chưa xoay vòng, hoặc revoked_access_tokens)
+    // để lần dựng lại danh sách thu hồi không làm mất
+    @Transactional
+    public void logout(String refreshToken, TokenPrincipal accessToken) {
+        List<String> revoked = new ArrayList<>();
+        if (refreshToken != null) {
+            Optional<RefreshToken> found = refreshTokenRepository.findById(hash(refreshToken));
+            if (found.isPresent()) {
+                RefreshToken token = found.get();
+                if (token.getRevokedAt() == null) {
+                    token.setRevokedAt(LocalDateTime.now());
+                    refreshTokenRepository.save(token);
+                }
+                // Token đã xoay vòng: access token đi kèm không bị thu hồi (cùng quy tắc với lúc dựng lại)
+                if (token.getReplacedBy() == null) {
+                    revoked.add(token.getAccessTokenId());
+                }
+            }
+        }
+        if (accessToken != null && accessToken.getTokenId() != null && !revoked.contains(accessToken.getTokenId())) {
+            LocalDateTime expiresAt = accessToken.getExpiresAt() != null
+                    ? LocalDateTime.ofInstant(accessToken.getExpiresAt().toInstant(), ZoneId.systemDefault())
+                    : LocalDateTime.now().plus(Duration.ofMillis(jwtUtil.getExpiration()));
+            revokedAccessTokenRepository.save(new RevokedAccessToken(accessToken.getTokenId(), expiresAt));
+            revoked.add(accessToken.getTokenId());
+        }
+        revokeAfterCommit(revoked);
+    }
+
+    @Transactional
+    public void revokeAll(Integer userId) {
+        List<RefreshToken> active = refreshTokenRepository.findActiveByUserId(userId);
+        List<String> revoked = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (RefreshToken token : active) {
+            token.setRevokedAt(now);
+            revoked.add(token.getAccessTokenId());
+        }
+        refreshTokenRepository.saveAll(active);
+        revokeAfterCommit(revoked);
+    }
+
+    // Xóa refresh token đã hết hạn
+    @Scheduled(cron = "${jwt.refresh-cleanup-cron:0 30 3 * * *}")
+    @Transactional
+    public void cleanupExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        int deleted = refreshTokenRepository.deleteExpiredBefore(now);
+        revokedAccessTokenRepository.deleteExpiredBefore(now);
+        if (deleted > 0) {
+            System.out.println("✅ Đã xóa " + deleted + " refresh token hết hạn");
+        }
+    }
+
+    private void revokeAfterCommit(List<String> accessTokenIds) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    accessTokenIds.forEach(tokenRevocationList::revoke);
+                }
+            });
+        } else {
+            accessTokenIds.forEach(tokenRevocationList::revoke);
+        }
+    }
+
+    private String newRefreshToken() {
+        byte[] bytes = new byte[32];
+        secureRandom.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 không khả dụng", e);
+        }
+    }
+}
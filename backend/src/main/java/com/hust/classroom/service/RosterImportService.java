@@ -0,0 +1,291 @@
+package com.hust.classroom.service;
+
+import com.hust.classroom.dto.RosterImportReport;
+import com.hust.classroom.dto.StudentLookup;
+import com.hust.classroom.repository.ClassRepository;
+import com.hust.classroom.repository.ClassStudentRepository;
+import com.hust.classroom.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+// Import danh sách sinh viên của lớp từ file CSV của phòng đào tạo.
+// Thay vì 5 query cho mỗi sinh viên như addStudentToClass: tra email/MSSV bằng vài query IN,
+// lọc sinh viên đã có trong lớp bằng một query, rồi chèn bằng JDBC batch
+@Service
+@RequiredArgsConstructor
+public class RosterImportService {
+
+    private static final int IN_CHUNK_SIZE = 1000;
+    private static final int INSERT_BATCH_SIZE = 500;
+
+    private final ClassRepository classRepository;
+    private final UserRepository userRepository;
+    private final ClassStudentRepository classStudentRepository;
+    private final ClassDashboardService classDashboardService;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${class.roster-import.max-rows:5000}")
+    private int maxRows;
+
+    // Một dòng trong file: email và/hoặc MSSV
+    private static final class RosterRow {
+        private final int line;
+        private final String email;
+        private final String mssv;
+
+        private RosterRow(int line, String email, String mssv) {
+            this.line = line;
+            this.email = email;
+            this.mssv = mssv;
+        }
+    }
+
+    @Transactional
+    public RosterImportReport importCsv(Integer classId, InputStream csv) throws IOException {
+        if (!classRepository.existsById(classId)) {
+            throw new RuntimeException("Không tìm thấy lớp học!");
+        }
+
+        RosterImportReport report = new RosterImportReport();
+        report.setClassId(classId);
+        List<RosterRow> rows = readRows(csv, report);
+
+        // 1. Tra sinh viên theo email (không phân biệt hoa thường), rồi theo MSSV cho các dòng không có email
+        //    hoặc có email nhưng không tìm thấy, bằng các query IN
+        Set<String> emails = new LinkedHashSet<>();
+        for (RosterRow row : rows) {
+            if (row.email != null) {
+                emails.add(row.email.toLowerCase(Locale.ROOT));
+            }
+        }
+        Map<String, Integer> idsByEmail = new HashMap<>();
+        for (List<String> chunk : chunks(new ArrayList<>(emails))) {
+            for (StudentLookup student : userRepository.findLookupsByEmailIn(chunk)) {
+                idsByEmail.put(student.getEmail().toLowerCase(Locale.ROOT), student.getId());
+            }
+        }
+        Set<String> mssvs = new LinkedHashSet<>();
+        for (RosterRow row : rows) {
+            if (row.mssv != null && findByEmail(idsByEmail, row) == null) {
+                mssvs.add(row.mssv);
+            }
+        }
+        Map<String, Integer> idsByMssv = new HashMap<>();
+        for (List<String> chunk : chunks(new ArrayList<>(mssvs))) {
+            for (StudentLookup student : userRepository.findLookupsByMssvIn(chunk)) {
+                idsByMssv.put(student.getMssv(), student.getId());
+            }
+        }
+
+        // 2. Sinh viên đã có trong lớp: một query cho mỗi 1000 sinh viên
+        Set<Integer> candidateIds = new LinkedHashSet<>(idsByEmail.values());
+        candidateIds.addAll(idsByMssv.values());
+        Set<Integer> enrolled = new HashSet<>();
+        for (List<Integer> chunk : chunks(new ArrayList<>(candidateIds))) {
+            enrolled.addAll(classStudentRepository.findEnrolledStudentIds(classId, chunk));
+        }
+
+        // 3. Phân loại từng dòng
+        Set<Integer> seen = new HashSet<>();
+        List<RosterImportReport.RowResult> toInsert = new ArrayList<>();
+        for (RosterRow row : rows) {
+            Integer studentId = findByEmail(idsByEmail, row);
+            if (studentId == null && row.mssv != null) {
+                studentId = idsByMssv.get(row.mssv);
+            }
+            RosterImportReport.RowResult result = new RosterImportReport.RowResult(
+                    row.line, row.email, row.mssv, studentId, null, null);
+            if (studentId == null) {
+                result.setStatus(RosterImportReport.Status.NOT_FOUND);
+                result.setMessage("Không tìm thấy sinh viên với "
+                        + (row.email != null ? "email: " + row.email + (row.mssv != null ? ", " : "") : "")
+                        + (row.mssv != null ? "MSSV: " + row.mssv : ""));
+            } else if (!seen.add(studentId)) {
+                result.setStatus(RosterImportReport.Status.DUPLICATE);
+                result.setMessage("Sinh viên xuất hiện nhiều lần trong file");
+            } else if (enrolled.contains(studentId)) {
+                result.setStatus(RosterImportReport.Status.ALREADY_ENROLLED);
+                result.setMessage("Sinh viên đã tham gia lớp này!");
+            } else {
+                toInsert.add(result);
+            }
+            report.getRows().add(result);
+        }
+
+        // 4. Chèn theo batch; ON CONFLICT phòng trường hợp sinh viên vừa tự tham gia bằng mã trong lúc import
+        Timestamp enrolledAt = Timestamp.valueOf(LocalDateTime.now());
+        for (int from = 0; from < toInsert.size(); from += INSERT_BATCH_SIZE) {
+            List<RosterImportReport.RowResult> batch = toInsert.subList(from, Math.min(from + INSERT_BATCH_SIZE, toInsert.size()));
+            int[] counts = jdbcTemplate.batchUpdate(
+                    "INSERT INTO class_students (class_id, student_id, enrolled_at) VALUES (?, ?, ?) " +
+                    "ON CONFLICT (class_id, student_id) DO NOTHING",
+                    batch, batch.size(), (ps, result) -> {
+                        ps.setInt(1, classId);
+                        ps.setInt(2, result.getStudentId());
+                        ps.setTimestamp(3, enrolledAt);
+                    })[0];
+            for (int i = 0; i < batch.size(); i++) {
+                RosterImportReport.RowResult result = batch.get(i);
+                if (counts[i] == 0) {
+                    result.setStatus(RosterImportReport.Status.ALREADY_ENROLLED);
+                    result.setMessage("Sinh viên đã tham gia lớp này!");
+                } else {
+                    result.setStatus(RosterImportReport.Status.ADDED);
+                }
+            }
+        }
+
+        for (RosterImportReport.RowResult result : report.getRows()) {
+            switch (result.getStatus()) {
+                case ADDED -> report.setAdded(report.getAdded() + 1);
+                case ALREADY_ENROLLED -> report.setAlreadyEnrolled(report.getAlreadyEnrolled() + 1);
+                case DUPLICATE -> report.setDuplicate(report.getDuplicate() + 1);
+                case NOT_FOUND -> report.setNotFound(report.getNotFound() + 1);
+                case INVALID -> report.setInvalid(report.getInvalid() + 1);
+            }
+        }
+        if (report.getAdded() > 0) {
+            classDashboardService.evictAfterCommit(classId);
+        }
+        report.getRows().sort((a, b) -> Integer.compare(a.getLine(), b.getLine()));
+        report.setTotal(report.getRows().size());
+        System.out.println("✅ [RosterImport] Class " + classId + ": " + report.getAdded() + " added, "
+                + report.getAlreadyEnrolled() + " already enrolled, " + report.getNotFound() + " not found, "
+                + report.getInvalid() + " invalid");
+        return report;
+    }
+
+    private Integer findByEmail(Map<String, Integer> idsByEmail, RosterRow row) {
+        return row.email != null ? idsByEmail.get(row.email.toLowerCase(Locale.ROOT)) : null;
+    }
+
+    // Đọc từng dòng (không giữ cả file trong bộ nhớ). Dòng đầu có "email"/"mssv" được coi là tiêu đề;
+    // không có tiêu đề thì cột đầu tiên là email (có '@') hoặc MSSV
+    private List<RosterRow> readRows(InputStream csv, RosterImportReport report) throws IOException {
+        List<RosterRow> rows = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(csv, StandardCharsets.UTF_8));
+        int emailColumn = -1;
+        int mssvColumn = -1;
+        char delimiter = ',';
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (lineNumber == 1) {
+                // Bỏ BOM của file CSV xuất từ Excel
+                if (line.startsWith("\uFEFF")) {
+                    line = line.substring(1);
+                }
+                delimiter = line.indexOf(';') >= 0 && line.indexOf(',') < 0 ? ';' : ',';
+                List<String> header = parseLine(line, delimiter);
+                for (int i = 0; i < header.size(); i++) {
+                    String name = header.get(i).toLowerCase(Locale.ROOT);
+                    if (emailColumn < 0 && name.contains("email")) {
+                        emailColumn = i;
+                    } else if (mssvColumn < 0 && (name.contains("mssv") || name.contains("student id"))) {
+                        mssvColumn = i;
+                    }
+                }
+                if (emailColumn >= 0 || mssvColumn >= 0) {
+                    continue;
+                }
+            }
+            if (line.isBlank()) {
+                continue;
+            }
+            if (rows.size() + report.getRows().size() >= maxRows) {
+                throw new RuntimeException("File có quá nhiều dòng! Tối đa " + maxRows + " sinh viên mỗi lần import.");
+            }
+
+            List<String> fields = parseLine(line, delimiter);
+            String email = null;
+            String mssv = null;
+            if (emailColumn >= 0 || mssvColumn >= 0) {
+                email = field(fields, emailColumn);
+                mssv = field(fields, mssvColumn);
+            } else {
+                String value = field(fields, 0);
+                if (value != null && value.contains("@")) {
+                    email = value;
+                } else {
+                    mssv = value;
+                }
+            }
+
+            if (email == null && mssv == null) {
+                report.getRows().add(new RosterImportReport.RowResult(lineNumber, null, null, null,
+                        RosterImportReport.Status.INVALID, "Thiếu email hoặc MSSV"));
+            } else if (email != null && !email.contains("@")) {
+                report.getRows().add(new RosterImportReport.RowResult(lineNumber, email, mssv, null,
+                        RosterImportReport.Status.INVALID, "Email không hợp lệ: " + email));
+            } else {
+                rows.add(new RosterRow(lineNumber, email, mssv));
+            }
+        }
+        return rows;
+    }
+
+    private String field(List<String> fields, int index) {
+        if (index < 0 || index >= fields.size()) {
+            return null;
+        }
+        String value = fields.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    // Tách một dòng CSV, hỗ trợ trường trong ngoặc kép và "" bên trong
+    private List<String> parseLine(String line, char delimiter) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == delimiter) {
+                fields.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        fields.add(current.toString());
+        return fields;
+    }
+
+    private <T> List<List<T>> chunks(List<T> values) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int from = 0; from < values.size(); from += IN_CHUNK_SIZE) {
+            chunks.add(values.subList(from, Math.min(from + IN_CHUNK_SIZE, values.size())));
+        }
+        return chunks;
+    }
+}
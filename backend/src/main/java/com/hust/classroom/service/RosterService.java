@@ -0,0 +1,108 @@
+package com.hust.classroom.service;
+
+import com.hust.classroom.dto.CursorPage;
+import com.hust.classroom.dto.RosterEntry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Locale;
+
+// Danh sách sinh viên của lớp dạng DTO (query chọn thẳng các cột, không nạp entity User/ClassStudent),
+// phân trang theo con trỏ: trang sau bắt đầu từ khóa sắp xếp của dòng cuối trang trước,
+// nên trang thứ 100 vẫn rẻ như trang đầu (không dùng OFFSET)
+@Service
+@RequiredArgsConstructor
+public class RosterService {
+    
+    public static final int MAX_LIMIT = 500;
+    
+    private final EntityManager entityManager;
+    
+    public enum Sort {
+        NAME("COALESCE(u.name, '')"),
+        MSSV("COALESCE(u.mssv, '')"),
+        ENROLLED_AT("cs.enrolledAt"); // Luôn được set khi thêm sinh viên vào lớp
+        
+        private final String key;
+        
+        Sort(String key) {
+            this.key = key;
+        }
+        
+        public static Sort parse(String value) {
+            if (value == null || value.isEmpty()) {
+                return NAME;
+            }
+            switch (value.toLowerCase(Locale.ROOT)) {
+                case "name": return NAME;
+                case "mssv": return MSSV;
+                case "enrolledat": case "enrolled_at": return ENROLLED_AT;
+                default: throw new IllegalArgumentException("Không hỗ trợ sắp xếp theo: " + value);
+            }
+        }
+    }
+    
+    // Toàn bộ danh sách (giữ tương thích với API cũ trả về mảng)
+    @Transactional(readOnly = true)
+    public List<RosterEntry> getRoster(Integer classId, Sort sort, boolean descending) {
+        return buildQuery(classId, sort, descending, null).getResultList();
+    }
+    
+    @Transactional(readOnly = true)
+    public CursorPage<RosterEntry> getRosterPage(Integer classId, Sort sort, boolean descending, String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_LIMIT));
+        TypedQuery<RosterEntry> query = buildQuery(classId, sort, descending, cursor);
+        List<RosterEntry> rows = query.setMaxResults(pageSize + 1).getResultList();
+        
+        boolean hasMore = rows.size() > pageSize;
+        List<RosterEntry> items = hasMore ? rows.subList(0, pageSize) : rows;
+        String nextCursor = hasMore ? cursorOf(items.get(items.size() - 1), sort) : null;
+        return new CursorPage<>(items, nextCursor, hasMore);
+    }
+    
+    private TypedQuery<RosterEntry> buildQuery(Integer classId, Sort sort, boolean descending, String cursor) {
+        String direction = descending ? "DESC" : "ASC";
+        String comparison = descending ? "<" : ">";
+        
+        // Khóa sắp xếp và điều kiện con trỏ lấy từ enum, không ghép chuỗi từ request
+        StringBuilder jpql = new StringBuilder(
+                "SELECT new com.hust.classroom.dto.RosterEntry(u.id, u.name, u.email, u.mssv, cs.enrolledAt) " +
+                "FROM ClassStudent cs JOIN cs.student u WHERE cs.classID = :classId");
+        if (cursor != null) {
+            jpql.append(" AND (").append(sort.key).append(" ").append(comparison).append(" :cursorKey")
+                .append(" OR (").append(sort.key).append(" = :cursorKey AND u.id ").append(comparison).append(" :cursorId))");
+        }
+        jpql.append(" ORDER BY ").append(sort.key).append(" ").append(direction).append(", u.id ").append(direction);
+        
+        TypedQuery<RosterEntry> query = entityManager.createQuery(jpql.toString(), RosterEntry.class)
+                .setParameter("classId", classId);
+        if (cursor != null) {
+            String[] values = CursorPage.decodeCursor(cursor, 2);
+            try {
+                query.setParameter("cursorKey", sort == Sort.ENROLLED_AT
+                        ? Timestamp.valueOf(LocalDateTime.parse(values[0]))
+                        : values[0]);
+                query.setParameter("cursorId", Integer.valueOf(values[1]));
+            } catch (NumberFormatException | DateTimeParseException e) {
+                throw new IllegalArgumentException("Cursor không hợp lệ!");
+            }
+        }
+        return query;
+    }
+    
+    private String cursorOf(RosterEntry entry, Sort sort) {
+        String key = switch (sort) {
+            case NAME -> entry.getName() != null ? entry.getName() : "";
+            case MSSV -> entry.getMssv() != null ? entry.getMssv() : "";
+            case ENROLLED_AT -> entry.getEnrolledAt().toLocalDateTime().toString();
+        };
+        return CursorPage.encodeCursor(key, String.valueOf(entry.getId()));
+    }
+}
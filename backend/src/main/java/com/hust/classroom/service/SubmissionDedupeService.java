@@ -0,0 +1,99 @@
+package com.hust.classroom.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Dọn bài nộp trùng (cùng sinh viên, lớp, tên bài tập) ngay trong DB: ROW_NUMBER() xếp hạng từng nhóm,
+// giữ bài đã chấm, nếu không có thì giữ bài mới nhất. Chạy theo từng nhóm sinh viên, mỗi nhóm một transaction ngắn.
+// Khi bảng đã sạch thì thêm ràng buộc UNIQUE để không phát sinh bản trùng mới.
+// Bài nộp không có tên bài tập (dữ liệu cũ) không bị dọn; bài mới bắt buộc có tên (SubmissionService.createSubmission)
+@Service
+public class SubmissionDedupeService {
+
+    private static final String UNIQUE_CONSTRAINT = "uk_submissions_student_class_bai_tap";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ClassDashboardService classDashboardService;
+
+    @Value("${submission.dedupe.students-per-chunk:500}")
+    private int studentsPerChunk;
+
+    // Xóa dữ liệu thật nên mặc định tắt: khi bảng còn bản trùng, chạy DELETE /api/grading/cleanup-duplicates
+    // (hoặc bật thuộc tính này một lần) rồi khởi động lại để thêm ràng buộc
+    @Value("${submission.dedupe.on-startup:false}")
+    private boolean dedupeOnStartup;
+
+    public SubmissionDedupeService(JdbcTemplate jdbcTemplate,
+                                   PlatformTransactionManager transactionManager,
+                                   ClassDashboardService classDashboardService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.classDashboardService = classDashboardService;
+    }
+
+    // Bảng cũ (tạo trước khi có ràng buộc) có thể còn bản trùng: chỉ dọn khi submission.dedupe.on-startup=true
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureUniqueConstraint() {
+        if (hasUniqueConstraint()) {
+            return;
+        }
+        try {
+            int deleted = dedupeOnStartup ? removeDuplicates() : 0;
+            jdbcTemplate.execute("ALTER TABLE submissions ADD CONSTRAINT " + UNIQUE_CONSTRAINT +
+                    " UNIQUE (student_id, class_id, ten_bai_tap)");
+            System.out.println("✅ [Submission] Đã xóa " + deleted + " bài nộp trùng và thêm ràng buộc " + UNIQUE_CONSTRAINT);
+        } catch (Exception e) {
+            // Còn bản trùng (khi chưa bật dọn lúc khởi động), hoặc Hibernate (ddl-auto=update) vừa thêm xong; lần khởi động sau thử lại
+            System.err.println("❌ [Submission] Không thêm được ràng buộc " + UNIQUE_CONSTRAINT + ": " + e.getMessage()
+                    + (dedupeOnStartup ? "" : " (bảng còn bài nộp trùng? Gọi DELETE /api/grading/cleanup-duplicates rồi khởi động lại)"));
+        }
+    }
+
+    public int removeDuplicates() {
+        // Khóa sắp xếp giống quy tắc cũ: bài đã chấm (có điểm) trước, rồi bài mới nhất
+        String sql = "DELETE FROM submissions WHERE submission_id IN (" +
+                "SELECT submission_id FROM (" +
+                "  SELECT submission_id, ROW_NUMBER() OVER (" +
+                "    PARTITION BY student_id, class_id, ten_bai_tap" +
+                "    ORDER BY CASE WHEN trang_thai = 'Graded' AND diem IS NOT NULL THEN 0 ELSE 1 END," +
+                "             submitted_at DESC NULLS LAST, submission_id DESC) AS rn" +
+                "  FROM submissions" +
+                "  WHERE ten_bai_tap IS NOT NULL AND student_id > ? AND student_id <= ?" +
+                ") ranked WHERE rn > 1)";
+
+        int totalDeleted = 0;
+        int lastStudentId = Integer.MIN_VALUE;
+        while (true) {
+            // Mốc trên của nhóm tiếp theo: sinh viên thứ studentsPerChunk kể từ mốc trước (đi theo index student_id)
+            Integer upperStudentId = jdbcTemplate.queryForObject(
+                    "SELECT MAX(student_id) FROM (SELECT DISTINCT student_id FROM submissions " +
+                    "WHERE student_id > ? ORDER BY student_id LIMIT ?) chunk",
+                    Integer.class, lastStudentId, studentsPerChunk);
+            if (upperStudentId == null) {
+                break;
+            }
+            int from = lastStudentId;
+            Integer deleted = transactionTemplate.execute(status -> jdbcTemplate.update(sql, from, upperStudentId));
+            totalDeleted += deleted != null ? deleted : 0;
+            lastStudentId = upperStudentId;
+        }
+
+        if (totalDeleted > 0) {
+            classDashboardService.evictAllAfterCommit();
+            System.out.println("✅ [Submission] Đã xóa " + totalDeleted + " bài nộp trùng lặp");
+        }
+        return totalDeleted;
+    }
+
+    private boolean hasUniqueConstraint() {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_constraint WHERE conname = ?", Integer.class, UNIQUE_CONSTRAINT);
+        return count != null && count > 0;
+    }
+}
@@ -0,0 +1,123 @@
+package com.hust.classroom.service;
+
+import com.hust.classroom.entity.Submission;
+import com.hust.classroom.entity.User;
+import com.hust.classroom.repository.ClassRepository;
+import com.hust.classroom.repository.SubmissionRepository;
+import com.hust.classroom.security.AuthPrincipal;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+@Service
+@RequiredArgsConstructor
+public class SubmissionExportService {
+
+    private static final String FILE_URL_PREFIX = "/api/files/";
+
+    private final SubmissionRepository submissionRepository;
+    private final ClassRepository classRepository;
+    private final FileStorageService fileStorageService;
+
+    @Data
+    @AllArgsConstructor
+    public static class ExportEntry {
+        private String entryName; // Tên trong file ZIP, ví dụ "Bai tap 1/20236001.pdf"
+        private String filename;  // Tên file trong /api/files/{filename}
+    }
+
+    // Chỉ Admin hoặc giáo viên dạy lớp được tải bài nộp của cả lớp
+    public boolean canExport(AuthPrincipal principal, Integer classId) {
+        if (principal == null) {
+            return false;
+        }
+        return principal.isAdmin()
+                || (principal.isTeacher() && classRepository.existsByClassIDAndGiaoVienID(classId, principal.getUserId()));
+    }
+
+    // Lấy danh sách bài nộp trong request thread, trước khi bắt đầu stream
+    @Transactional(readOnly = true)
+    public List<ExportEntry> prepareExport(Integer classId, String tenBaiTap) {
+        List<Submission> submissions = submissionRepository.findByClassId(classId);
+        List<ExportEntry> entries = new ArrayList<>();
+        Set<String> usedNames = new HashSet<>();
+
+        for (Submission submission : submissions) {
+            if (tenBaiTap != null && !tenBaiTap.equals(submission.getTenBaiTap())) {
+                continue;
+            }
+            String filePath = submission.getFilePath();
+            if (filePath == null || !filePath.startsWith(FILE_URL_PREFIX)) {
+                continue;
+            }
+            String filename = filePath.substring(FILE_URL_PREFIX.length());
+
+            // Đặt tên theo MSSV, gom theo bài tập nếu xuất cả lớp
+            String baseName = studentLabel(submission.getStudent(), submission.getStudentID());
+            String folder = tenBaiTap == null && submission.getTenBaiTap() != null
+                    ? sanitize(submission.getTenBaiTap(), "bai-tap") + "/"
+                    : "";
+            String extension = filename.contains(".") ? filename.substring(filename.lastIndexOf(".")) : "";
+
+            String entryName = folder + baseName + extension;
+            int suffix = 2;
+            while (!usedNames.add(entryName)) {
+                entryName = folder + baseName + "_" + suffix++ + extension;
+            }
+            entries.add(new ExportEntry(entryName, filename));
+        }
+        return entries;
+    }
+
+    // Ghi ZIP trực tiếp ra response, từng file một, không lưu tạm trên đĩa hay bộ nhớ
+    public void writeZip(List<ExportEntry> entries, OutputStream outputStream) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(outputStream);
+        // PDF, ảnh, file nén đã nén sẵn: ưu tiên tốc độ
+        zip.setLevel(Deflater.BEST_SPEED);
+        int missing = 0;
+
+        for (ExportEntry entry : entries) {
+            try (InputStream in = fileStorageService.openFile(entry.getFilename())) {
+                zip.putNextEntry(new ZipEntry(entry.getEntryName()));
+                in.transferTo(zip);
+                zip.closeEntry();
+            } catch (NoSuchFileException e) {
+                missing++;
+                System.err.println("⚠️ [Export] Missing file for " + entry.getEntryName() + ": " + entry.getFilename());
+            }
+        }
+
+        zip.finish();
+        zip.flush();
+        System.out.println("✅ [Export] Exported " + (entries.size() - missing) + " submissions, " + missing + " missing");
+    }
+
+    private String studentLabel(User student, Integer studentId) {
+        if (student != null && student.getMssv() != null && !student.getMssv().isEmpty()) {
+            return sanitize(student.getMssv(), "student-" + studentId);
+        }
+        return "student-" + studentId;
+    }
+
+    // Tên bài tập / MSSV do người dùng nhập: bỏ ký tự cấm và dấu chấm đầu tên, để "." hay ".." không thành
+    // đường dẫn thoát khỏi thư mục giải nén (zip-slip); rỗng thì dùng tên mặc định
+    private String sanitize(String name, String fallback) {
+        String safe = name.replaceAll("[\\\\/:*?\"<>|\\p{Cntrl}]", "_").trim();
+        safe = safe.replaceAll("^\\.+", "").trim();
+        return safe.isEmpty() ? fallback : safe;
+    }
+}
@@ -1,30 +1,29 @@
 package com.hust.classroom.service;
 
-import com.hust.classroom.entity.Class;
 import com.hust.classroom.entity.Submission;
-import com.hust.classroom.entity.User;
-import com.hust.classroom.repository.ClassRepository;
 import com.hust.classroom.repository.SubmissionRepository;
-import com.hust.classroom.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 
 @Service
 @RequiredArgsConstructor
 public class SubmissionService {
     
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 100;
+    
     private final SubmissionRepository submissionRepository;
-    private final UserRepository userRepository;
-    private final ClassRepository classRepository;
+    private final ClassDashboardService classDashboardService;
+    private final JdbcTemplate jdbcTemplate;
     
     public List<Submission> getSubmissions(Integer teacherId, Integer classId) {
         if (classId != null) {
@@ -49,36 +48,83 @@ public class SubmissionService {
         return submissionRepository.findAll();
     }
     
+    // Một câu INSERT ... ON CONFLICT DO NOTHING: ràng buộc UNIQUE trong DB chặn nộp trùng (kể cả hai request đồng thời
+    // do bấm đúp), không cần kiểm tra trước hay nạp sinh viên / lớp. Client gửi lại request với cùng Idempotency-Key
+    // (mạng chập chờn sát hạn nộp) sẽ nhận lại bài nộp ban đầu thay vì báo lỗi
     @Transactional
-    public Submission createSubmission(Submission submission) {
-        // Kiểm tra xem sinh viên đã nộp bài tập này chưa
-        if (submission.getStudentID() != null && submission.getLopHocID() != null && submission.getTenBaiTap() != null) {
-            List<Submission> existingSubmissions = submissionRepository.findByStudentIdAndClassIdAndTenBaiTap(
-                submission.getStudentID(),
-                submission.getLopHocID(),
-                submission.getTenBaiTap()
-            );
-            
-            if (!existingSubmissions.isEmpty()) {
-                throw new RuntimeException("Bạn đã nộp bài tập này rồi! Mỗi bài tập chỉ được nộp một lần.");
-            }
+    public Submission createSubmission(Submission submission, String idempotencyKey) {
+        if (submission.getStudentID() == null || submission.getLopHocID() == null) {
+            throw new RuntimeException("Thiếu thông tin sinh viên hoặc lớp học!");
+        }
+        // ten_bai_tap NULL không bị ràng buộc UNIQUE chặn (NULL khác NULL): bắt buộc có tên bài tập
+        if (submission.getTenBaiTap() == null || submission.getTenBaiTap().isBlank()) {
+            throw new RuntimeException("Thiếu tên bài tập!");
+        }
+        if (idempotencyKey != null && (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH)) {
+            throw new RuntimeException("Idempotency-Key không hợp lệ!");
         }
         
-        // Set relationships if IDs are provided
-        if (submission.getStudentID() != null) {
-            User student = userRepository.findById(submission.getStudentID())
-                    .orElseThrow(() -> new RuntimeException("Không tìm thấy sinh viên!"));
-            submission.setStudent(student);
+        LocalDateTime now = LocalDateTime.now();
+        List<Integer> inserted;
+        try {
+            inserted = jdbcTemplate.queryForList(
+                    "INSERT INTO submissions (student_id, class_id, ten_bai_tap, file_path, trang_thai, submitted_at, idempotency_key) " +
+                    "VALUES (?, ?, ?, ?, 'Pending', ?, ?) ON CONFLICT DO NOTHING RETURNING submission_id",
+                    Integer.class,
+                    submission.getStudentID(), submission.getLopHocID(), submission.getTenBaiTap(),
+                    submission.getFilePath(), Timestamp.valueOf(now), idempotencyKey);
+        } catch (DataIntegrityViolationException e) {
+            // Vi phạm khóa ngoại: sinh viên hoặc lớp không tồn tại
+            System.err.println("❌ [Submission] Insert failed: " + e.getMostSpecificCause().getMessage());
+            throw new RuntimeException("Không tìm thấy sinh viên hoặc lớp học!");
         }
-        if (submission.getLopHocID() != null) {
-            Class lopHoc = classRepository.findById(submission.getLopHocID())
-                    .orElseThrow(() -> new RuntimeException("Không tìm thấy lớp học!"));
-            submission.setLopHoc(lopHoc);
+        
+        if (inserted.isEmpty()) {
+            return replay(submission, idempotencyKey);
         }
         
-        submission.setSubmittedAt(LocalDateTime.now());
+        submission.setSubmissionID(inserted.get(0));
         submission.setTrangThai("Pending");
-        return submissionRepository.save(submission);
+        submission.setSubmittedAt(now);
+        submission.setIdempotencyKey(idempotencyKey);
+        classDashboardService.evictAfterCommit(submission.getLopHocID());
+        return submission;
+    }
+    
+    // Không chèn được: hoặc là request gửi lại (cùng Idempotency-Key), hoặc sinh viên đã nộp bài này
+    private Submission replay(Submission submission, String idempotencyKey) {
+        if (idempotencyKey != null) {
+            List<Submission> originals = jdbcTemplate.query(
+                    "SELECT submission_id, student_id, class_id, ten_bai_tap, file_path, diem, nhan_xet, trang_thai, " +
+                    "submitted_at, graded_at FROM submissions WHERE student_id = ? AND idempotency_key = ?",
+                    (rs, rowNum) -> {
+                        Submission original = new Submission();
+                        original.setSubmissionID(rs.getInt("submission_id"));
+                        original.setStudentID(rs.getInt("student_id"));
+                        original.setLopHocID(rs.getInt("class_id"));
+                        original.setTenBaiTap(rs.getString("ten_bai_tap"));
+                        original.setFilePath(rs.getString("file_path"));
+                        original.setDiem(rs.getBigDecimal("diem"));
+                        original.setNhanXet(rs.getString("nhan_xet"));
+                        original.setTrangThai(rs.getString("trang_thai"));
+                        Timestamp submittedAt = rs.getTimestamp("submitted_at");
+                        original.setSubmittedAt(submittedAt != null ? submittedAt.toLocalDateTime() : null);
+                        Timestamp gradedAt = rs.getTimestamp("graded_at");
+                        original.setGradedAt(gradedAt != null ? gradedAt.toLocalDateTime() : null);
+                        original.setIdempotencyKey(idempotencyKey);
+                        return original;
+                    },
+                    submission.getStudentID(), idempotencyKey);
+            if (!originals.isEmpty()) {
+                Submission original = originals.get(0);
+                if (!Objects.equals(original.getLopHocID(), submission.getLopHocID())
+                        || !Objects.equals(original.getTenBaiTap(), submission.getTenBaiTap())) {
+                    throw new RuntimeException("Idempotency-Key đã được dùng cho một bài nộp khác!");
+                }
+                return original;
+            }
+        }
+        throw new RuntimeException("Bạn đã nộp bài tập này rồi! Mỗi bài tập chỉ được nộp một lần.");
     }
     
     @Transactional
@@ -91,65 +137,7 @@ public class SubmissionService {
         submission.setTrangThai("Graded");
         submission.setGradedAt(LocalDateTime.now());
         
+        classDashboardService.evictAfterCommit(submission.getLopHocID());
         return submissionRepository.save(submission);
     }
-    
-    @Transactional
-    public int removeDuplicateSubmissions() {
-        int totalDeleted = 0;
-        
-        // Lấy tất cả submissions
-        List<Submission> allSubmissions = submissionRepository.findAll();
-        
-        // Nhóm submissions theo (studentID, lopHocID, tenBaiTap)
-        Map<String, List<Submission>> groupedSubmissions = new HashMap<>();
-        
-        for (Submission submission : allSubmissions) {
-            if (submission.getStudentID() != null && submission.getLopHocID() != null && submission.getTenBaiTap() != null) {
-                String key = submission.getStudentID() + "_" + submission.getLopHocID() + "_" + submission.getTenBaiTap();
-                groupedSubmissions.computeIfAbsent(key, k -> new ArrayList<>()).add(submission);
-            }
-        }
-        
-        // Xử lý từng nhóm
-        for (List<Submission> group : groupedSubmissions.values()) {
-            if (group.size() > 1) {
-                // Có trùng lặp
-                // Tìm submission đã được chấm (Graded)
-                Submission gradedSubmission = group.stream()
-                    .filter(s -> "Graded".equals(s.getTrangThai()) && s.getDiem() != null)
-                    .findFirst()
-                    .orElse(null);
-                
-                Submission toKeep;
-                if (gradedSubmission != null) {
-                    // Giữ lại submission đã chấm
-                    toKeep = gradedSubmission;
-                } else {
-                    // Nếu không có submission đã chấm, giữ lại submission mới nhất
-                    toKeep = group.stream()
-                        .max((s1, s2) -> {
-                            if (s1.getSubmittedAt() == null && s2.getSubmittedAt() == null) return 0;
-                            if (s1.getSubmittedAt() == null) return -1;
-                            if (s2.getSubmittedAt() == null) return 1;
-                            return s1.getSubmittedAt().compareTo(s2.getSubmittedAt());
-                        })
-                        .orElse(null);
-                }
-                
-                // Xóa các submission còn lại
-                if (toKeep != null) {
-                    for (Submission submission : group) {
-                        if (!submission.getSubmissionID().equals(toKeep.getSubmissionID())) {
-                            submissionRepository.delete(submission);
-                            totalDeleted++;
-                        }
-                    }
-                }
-            }
-        }
-        
-        return totalDeleted;
-    }
 }
-
@@ -2,15 +2,17 @@ package com.hust.classroom.service;
 
 import com.hust.classroom.entity.User;
 import com.hust.classroom.repository.*;
-import lombok.RequiredArgsConstructor;
+import com.hust.classroom.security.AuthPrincipalService;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.List;
 import java.util.Optional;
 
+// Như AuthService: BCrypt chạy ngoài transaction, chỉ phần đọc / ghi DB nằm trong transaction ngắn
 @Service
-@RequiredArgsConstructor
 public class UserService {
     
     private final UserRepository userRepository;
@@ -18,6 +20,36 @@ public class UserService {
     private final ClassStudentRepository classStudentRepository;
     private final NotificationRepository notificationRepository;
     private final ClassRepository classRepository;
+    private final PostRepository postRepository;
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final AuthPrincipalService authPrincipalService;
+    private final ClassDashboardService classDashboardService;
+    private final PasswordHashingService passwordHashingService;
+    private final TransactionTemplate transactionTemplate;
+    
+    public UserService(UserRepository userRepository,
+                       SubmissionRepository submissionRepository,
+                       ClassStudentRepository classStudentRepository,
+                       NotificationRepository notificationRepository,
+                       ClassRepository classRepository,
+                       PostRepository postRepository,
+                       RefreshTokenRepository refreshTokenRepository,
+                       AuthPrincipalService authPrincipalService,
+                       ClassDashboardService classDashboardService,
+                       PasswordHashingService passwordHashingService,
+                       PlatformTransactionManager transactionManager) {
+        this.userRepository = userRepository;
+        this.submissionRepository = submissionRepository;
+        this.classStudentRepository = classStudentRepository;
+        this.notificationRepository = notificationRepository;
+        this.classRepository = classRepository;
+        this.postRepository = postRepository;
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.authPrincipalService = authPrincipalService;
+        this.classDashboardService = classDashboardService;
+        this.passwordHashingService = passwordHashingService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
     
     public List<User> getAllUsers() {
         return userRepository.findAll();
@@ -27,8 +59,20 @@ public class UserService {
         return userRepository.findById(id);
     }
     
-    @Transactional
     public User createUser(User user) {
+        // Kiểm tra trước khi hash để không tốn BCrypt cho yêu cầu chắc chắn bị từ chối
+        validateNewUser(user);
+        String passwordHash = passwordHashingService.hash(user.getPassword());
+        
+        return transactionTemplate.execute(status -> {
+            // Kiểm tra lại trong transaction: có thể đã có người tạo trùng trong lúc hash
+            validateNewUser(user);
+            user.setPassword(passwordHash);
+            return userRepository.save(user);
+        });
+    }
+    
+    private void validateNewUser(User user) {
         if (user.getEmail() == null || user.getEmail().isEmpty()) {
             throw new RuntimeException("Email không được để trống!");
         }
@@ -51,8 +95,6 @@ public class UserService {
                 throw new RuntimeException("MSSV này đã được sử dụng! Mỗi sinh viên chỉ có thể có một tài khoản.");
             }
         }
-        
-        return userRepository.save(user);
     }
     
     @Transactional
@@ -93,9 +135,11 @@ public class UserService {
         //     user.setPassword(userDetails.getPassword());
         // }
         
+        authPrincipalService.evict(id);
         return userRepository.save(user);
     }
     
+    // Xóa người dùng và dữ liệu liên quan bằng các câu DELETE theo tập, không nạp từng bản ghi thành entity
     @Transactional
     public void deleteUser(Integer id) {
         User user = userRepository.findById(id)
@@ -103,37 +147,26 @@ public class UserService {
         
         // Kiểm tra nếu user là giáo viên và có lớp học
         if (user.getRole() == User.Role.Teacher) {
-            List<com.hust.classroom.entity.Class> classes = classRepository.findByGiaoVienId(id);
-            if (!classes.isEmpty()) {
-                throw new RuntimeException("Không thể xóa giáo viên này! Giáo viên đang quản lý " + classes.size() + " lớp học. Vui lòng xóa hoặc chuyển giao các lớp học trước.");
+            List<Integer> classIds = classRepository.findIdsByGiaoVienId(id);
+            if (!classIds.isEmpty()) {
+                throw new RuntimeException("Không thể xóa giáo viên này! Giáo viên đang quản lý " + classIds.size() + " lớp học. Vui lòng xóa hoặc chuyển giao các lớp học trước.");
             }
         }
         
         try {
             // Xóa các bản ghi liên quan trước
-            // 1. Xóa submissions
-            List<com.hust.classroom.entity.Submission> submissions = submissionRepository.findByStudentId(id);
-            if (!submissions.isEmpty()) {
-                submissionRepository.deleteAll(submissions);
-                System.out.println("✅ Đã xóa " + submissions.size() + " bài nộp liên quan");
-            }
-            
-            // 2. Xóa class enrollments
-            List<com.hust.classroom.entity.ClassStudent> enrollments = classStudentRepository.findByStudentId(id);
-            if (!enrollments.isEmpty()) {
-                classStudentRepository.deleteAll(enrollments);
-                System.out.println("✅ Đã xóa " + enrollments.size() + " đăng ký lớp học liên quan");
-            }
+            int submissions = submissionRepository.deleteByStudentId(id);
+            int enrollments = classStudentRepository.deleteByStudentId(id);
+            int notifications = notificationRepository.deleteByUserId(id);
+            int posts = postRepository.deleteByAuthorId(id);
+            refreshTokenRepository.deleteByUserId(id);
+            System.out.println("✅ Đã xóa " + submissions + " bài nộp, " + enrollments + " đăng ký lớp học, "
+                    + notifications + " thông báo, " + posts + " bài đăng liên quan");
             
-            // 3. Xóa notifications
-            List<com.hust.classroom.entity.Notification> notifications = notificationRepository.findByUserId(id);
-            if (!notifications.isEmpty()) {
-                notificationRepository.deleteAll(notifications);
-                System.out.println("✅ Đã xóa " + notifications.size() + " thông báo liên quan");
-            }
-            
-            // 4. Cuối cùng mới xóa user
-            userRepository.deleteById(id);
+            // Cuối cùng mới xóa user
+            userRepository.deleteByUserId(id);
+            authPrincipalService.evict(id);
+            classDashboardService.evictAllAfterCommit();
             System.out.println("✅ Đã xóa người dùng ID: " + id);
         } catch (Exception e) {
             System.err.println("❌ Lỗi khi xóa người dùng: " + e.getMessage());
@@ -150,13 +183,13 @@ public class UserService {
         return userRepository.findByMssv(mssv);
     }
     
-    @Transactional
     public void changePassword(Integer userId, String oldPassword, String newPassword) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy người dùng!"));
+        String oldHash = user.getPassword();
         
         // Kiểm tra mật khẩu cũ
-        if (!user.getPassword().equals(oldPassword)) {
+        if (!passwordHashingService.matches(oldPassword, oldHash)) {
             throw new RuntimeException("Mật khẩu cũ không đúng!");
         }
         
@@ -164,10 +197,19 @@ public class UserService {
         if (newPassword == null || newPassword.isEmpty() || newPassword.length() < 6) {
             throw new RuntimeException("Mật khẩu mới phải có ít nhất 6 ký tự!");
         }
+        String newHash = passwordHashingService.hash(newPassword);
         
-        // Cập nhật mật khẩu mới (trong thực tế nên hash password)
-        user.setPassword(newPassword);
-        userRepository.save(user);
+        // Cập nhật mật khẩu mới
+        transactionTemplate.executeWithoutResult(status -> {
+            User current = userRepository.findById(userId)
+                    .orElseThrow(() -> new RuntimeException("Không tìm thấy người dùng!"));
+            // Mật khẩu đã bị đổi trong lúc hash: mật khẩu cũ vừa kiểm tra không còn đúng
+            if (!oldHash.equals(current.getPassword())) {
+                throw new RuntimeException("Mật khẩu cũ không đúng!");
+            }
+            current.setPassword(newHash);
+            userRepository.save(current);
+        });
     }
 }
 
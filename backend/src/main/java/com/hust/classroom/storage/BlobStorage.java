@@ -0,0 +1,24 @@
+package com.hust.classroom.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.OptionalLong;
+
+// Nơi lưu nội dung file theo khóa (SHA-256 của nội dung); FileController chỉ làm việc qua interface này
+public interface BlobStorage {
+
+    // Chuyển file tạm đã ghi xong vào kho dưới khóa key; file tạm không còn dùng được sau lời gọi
+    void put(String key, Path source) throws IOException;
+
+    // Kích thước blob, rỗng nếu blob không tồn tại
+    OptionalLong size(String key) throws IOException;
+
+    // Ghi đoạn [offset, offset + length) của blob ra output
+    void copyTo(String key, long offset, long length, OutputStream out) throws IOException;
+
+    InputStream openStream(String key) throws IOException;
+
+    void delete(String key) throws IOException;
+}
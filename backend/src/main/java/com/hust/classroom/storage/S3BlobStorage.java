@@ -0,0 +1,142 @@
+package com.hust.classroom.storage;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.OptionalLong;
+
+// Lưu blob trên object store tương thích S3 (AWS S3, MinIO chạy local để thử nghiệm...)
+@Component
+@ConditionalOnProperty(name = "file.storage.type", havingValue = "s3")
+public class S3BlobStorage implements BlobStorage {
+
+    private final S3Client s3Client;
+    private final String bucket;
+    private final String prefix;
+
+    public S3BlobStorage(@Value("${file.storage.s3.bucket}") String bucket,
+                         @Value("${file.storage.s3.prefix:blobs/}") String prefix,
+                         @Value("${file.storage.s3.region:us-east-1}") String region,
+                         @Value("${file.storage.s3.endpoint:}") String endpoint,
+                         @Value("${file.storage.s3.access-key:}") String accessKey,
+                         @Value("${file.storage.s3.secret-key:}") String secretKey) {
+        this.bucket = bucket;
+        this.prefix = prefix;
+
+        S3ClientBuilder builder = S3Client.builder().region(Region.of(region));
+        if (!endpoint.isEmpty()) {
+            // MinIO và các dịch vụ tương thích S3 cần path-style URL
+            builder.endpointOverride(URI.create(endpoint)).forcePathStyle(true);
+        }
+        if (!accessKey.isEmpty()) {
+            builder.credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey)));
+        } else {
+            builder.credentialsProvider(DefaultCredentialsProvider.create());
+        }
+        this.s3Client = builder.build();
+    }
+
+    @Override
+    public void put(String key, Path source) throws IOException {
+        try {
+            s3Client.putObject(PutObjectRequest.builder().bucket(bucket).key(objectKey(key)).build(),
+                    RequestBody.fromFile(source));
+        } catch (S3Exception e) {
+            throw new IOException("Không thể ghi blob " + key + " lên S3: " + e.getMessage(), e);
+        } finally {
+            Files.deleteIfExists(source);
+        }
+    }
+
+    @Override
+    public OptionalLong size(String key) throws IOException {
+        try {
+            Long contentLength = s3Client.headObject(HeadObjectRequest.builder().bucket(bucket).key(objectKey(key)).build())
+                    .contentLength();
+            return OptionalLong.of(contentLength);
+        } catch (S3Exception e) {
+            if (e.statusCode() == 404) {
+                return OptionalLong.empty();
+            }
+            throw new IOException("Không thể đọc thông tin blob " + key + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void copyTo(String key, long offset, long length, OutputStream out) throws IOException {
+        if (length <= 0) {
+            return;
+        }
+        GetObjectRequest request = GetObjectRequest.builder()
+                .bucket(bucket)
+                .key(objectKey(key))
+                .range("bytes=" + offset + "-" + (offset + length - 1))
+                .build();
+        try (ResponseInputStream<GetObjectResponse> in = s3Client.getObject(request)) {
+            in.transferTo(out);
+        } catch (S3Exception e) {
+            throw readFailure(key, e);
+        }
+    }
+
+    @Override
+    public InputStream openStream(String key) throws IOException {
+        try {
+            return s3Client.getObject(GetObjectRequest.builder().bucket(bucket).key(objectKey(key)).build());
+        } catch (S3Exception e) {
+            throw readFailure(key, e);
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        try {
+            s3Client.deleteObject(DeleteObjectRequest.builder().bucket(bucket).key(objectKey(key)).build());
+        } catch (S3Exception e) {
+            throw new IOException("Không thể xóa blob " + key + " trên S3: " + e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        s3Client.close();
+    }
+
+    // Blob không tồn tại (NoSuchKey, 404) báo bằng NoSuchFileException giống LocalBlobStorage để nơi gọi xử lý như nhau
+    private IOException readFailure(String key, S3Exception e) {
+        if (e.statusCode() == 404) {
+            NoSuchFileException notFound = new NoSuchFileException(key);
+            notFound.initCause(e);
+            return notFound;
+        }
+        return new IOException("Không thể đọc blob " + key + " từ S3: " + e.getMessage(), e);
+    }
+
+    // Cùng cách chia thư mục theo tiền tố hash như bản local: blobs/ab/cd/abcd...
+    private String objectKey(String key) {
+        return prefix + key.substring(0, 2) + "/" + key.substring(2, 4) + "/" + key;
+    }
+}
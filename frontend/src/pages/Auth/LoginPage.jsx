@@ -77,6 +77,9 @@ const LoginPage = () => {
 
       // Lưu token và user info
       localStorage.setItem('token', response.token);
+      if (response.refreshToken) {
+        localStorage.setItem('refresh_token', response.refreshToken);
+      }
       localStorage.setItem('user_info', JSON.stringify(response.user));
       window.dispatchEvent(new Event("user-update"));
 
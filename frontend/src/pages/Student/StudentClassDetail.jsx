@@ -1,8 +1,8 @@
-import React, { useState, useEffect } from 'react';
+import React, { useState, useEffect, useRef } from 'react';
 import { Tabs, List, Avatar, Button, Input, Card, Tag, Collapse, Modal, Form, Upload, message, Divider, Typography, Spin } from 'antd';
 import { UserOutlined, FilePdfOutlined, FileTextOutlined, UploadOutlined, LinkOutlined, CheckCircleOutlined, SendOutlined, DownloadOutlined } from '@ant-design/icons';
 import { useParams } from 'react-router-dom';
-import { classAPI, userAPI, gradingAPI, postAPI, assignmentAPI, fileAPI, notificationAPI } from '../../utils/api';
+import { classAPI, userAPI, gradingAPI, postAPI, assignmentAPI, fileAPI, notificationAPI, generateIdempotencyKey } from '../../utils/api';
 import { formatDate, formatDateTime, formatRelativeTime, isPastDate } from '../../utils/dateUtils';
 
 const { Panel } = Collapse;
@@ -17,6 +17,7 @@ const StudentClassDetail = () => {
   const [assignments, setAssignments] = useState([]);
   const [isModalOpen, setIsModalOpen] = useState(false);
   const [currentAssignment, setCurrentAssignment] = useState(null);
+  const submitKeyRef = useRef(null); // Idempotency-Key cho lần nộp bài đang mở
   const [form] = Form.useForm();
   const [commentInput, setCommentInput] = useState({});
   const [isFileViewerOpen, setIsFileViewerOpen] = useState(false);
@@ -96,6 +97,7 @@ const StudentClassDetail = () => {
     }
     
     setCurrentAssignment(assignment);
+    submitKeyRef.current = generateIdempotencyKey();
     setIsModalOpen(true);
   };
 
@@ -147,7 +149,7 @@ const StudentClassDetail = () => {
       };
 
       console.log('🔵 Creating submission:', submissionData);
-      const response = await gradingAPI.createSubmission(submissionData);
+      const response = await gradingAPI.createSubmission(submissionData, submitKeyRef.current);
       
       if (response.error) {
         // Kiểm tra xem lỗi có phải do đã nộp bài không
@@ -25,6 +25,7 @@ const TeacherClassDetail = () => {
   const [classInfo, setClassInfo] = useState(null);
   const [teacherInfo, setTeacherInfo] = useState(null);
   const [students, setStudents] = useState([]);
+  const [dashboard, setDashboard] = useState(null);
   const [isAddStudentModalOpen, setIsAddStudentModalOpen] = useState(false);
   const [addStudentLoading, setAddStudentLoading] = useState(false);
   const [addStudentForm] = Form.useForm();
@@ -68,6 +69,8 @@ const TeacherClassDetail = () => {
         console.error('❌ Error loading students:', err);
         setStudents([]);
       }
+
+      loadDashboard();
     } catch (error) {
       console.error('Error loading class data:', error);
       message.error('Không thể tải thông tin lớp học');
@@ -76,6 +79,13 @@ const TeacherClassDetail = () => {
     }
   };
 
+  // Số liệu tổng quan hiển thị trên header (một request thay vì đếm từ các danh sách)
+  const loadDashboard = async () => {
+    const dashboardData = await classAPI.getDashboard(id, 0);
+    console.log('🔵 Class dashboard:', dashboardData);
+    setDashboard(dashboardData);
+  };
+
   // Thêm sinh viên vào lớp
   const handleAddStudent = async (values) => {
     try {
@@ -373,6 +383,7 @@ const TeacherClassDetail = () => {
       }
       
       await loadAssignments();
+      loadDashboard();
     } catch (error) {
       console.error('Error creating assignment:', error);
       message.error('Tạo bài tập thất bại!');
@@ -397,6 +408,7 @@ const TeacherClassDetail = () => {
       console.log('🔵 [handleDeleteAssignment] Delete successful, response:', response);
       message.success(response?.message || 'Đã xóa thành công!');
       await loadAssignments();
+      loadDashboard();
       console.log('🔵 [handleDeleteAssignment] Reloaded assignments');
     } catch (error) {
       console.error('❌ [handleDeleteAssignment] Exception:', error);
@@ -897,6 +909,15 @@ const TeacherClassDetail = () => {
         <div style={{ color: 'white' }}>
             <h1 style={{ fontSize: 32, margin: 0 }}>{classInfo?.tenLop || classInfo?.name || 'Đang tải...'}</h1>
             <p style={{ fontSize: 18, opacity: 0.9 }}>Mã tham gia: {classInfo?.maThamGia || classInfo?.code || 'Không có'}</p>
+            {dashboard && (
+              <Space size="large" style={{ fontSize: 15, opacity: 0.9 }}>
+                <span>👥 {dashboard.studentCount} sinh viên</span>
+                <span>📝 {dashboard.assignmentCount} bài tập</span>
+                <span>📚 {dashboard.materialCount} tài liệu</span>
+                <span>⏳ {dashboard.pendingSubmissionCount} bài chờ chấm</span>
+                <span>✅ {dashboard.gradedSubmissionCount} bài đã chấm</span>
+              </Space>
+            )}
         </div>
       </Card>
 
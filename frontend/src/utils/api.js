@@ -1,3 +1,5 @@
+import { doLogout } from './logout';
+
 const API_BASE_URL = 'http://localhost:5000/api';
 
 // Test connection function
@@ -38,6 +40,77 @@ const getHeaders = (includeAuth = true) => {
   return headers;
 };
 
+// Access token chỉ sống vài phút: đổi refresh token lấy token mới trước khi hết hạn hoặc khi server trả 401.
+// Nhiều request cùng lúc dùng chung một lần refresh (refresh token bị xoay vòng, gửi hai lần sẽ bị coi là dùng lại)
+let refreshPromise = null;
+
+const refreshAccessToken = () => {
+  if (!refreshPromise) {
+    const refreshToken = localStorage.getItem('refresh_token');
+    refreshPromise = (async () => {
+      if (!refreshToken) {
+        return null;
+      }
+      try {
+        const response = await fetch(`${API_BASE_URL}/auth/refresh`, {
+          method: 'POST',
+          headers: getHeaders(false),
+          body: JSON.stringify({ refreshToken }),
+        });
+        if (!response.ok) {
+          // Refresh token hết hạn / bị thu hồi: phiên đã kết thúc, đăng nhập lại
+          if (response.status === 400 || response.status === 401) {
+            doLogout();
+          }
+          return null;
+        }
+        const data = await response.json();
+        localStorage.setItem('token', data.token);
+        localStorage.setItem('refresh_token', data.refreshToken);
+        return data.token;
+      } catch (error) {
+        console.error('❌ Refresh token error:', error);
+        return null;
+      }
+    })().finally(() => {
+      refreshPromise = null;
+    });
+  }
+  return refreshPromise;
+};
+
+// Token sắp hết hạn (trong 30 giây tới) thì refresh trước, đỡ một lượt 401
+const isTokenExpiring = (token) => {
+  try {
+    const payload = JSON.parse(atob(token.split('.')[1].replace(/-/g, '+').replace(/_/g, '/')));
+    return !payload.exp || payload.exp * 1000 < Date.now() + 30000;
+  } catch (error) {
+    return false;
+  }
+};
+
+// fetch kèm access token hiện tại; tự refresh và gửi lại một lần khi token hết hạn
+const authFetch = async (url, options = {}) => {
+  let token = getToken();
+  if (token && isTokenExpiring(token)) {
+    token = (await refreshAccessToken()) || getToken();
+  }
+  const withToken = (currentToken) => {
+    const headers = { ...(options.headers || {}) };
+    if (currentToken) {
+      headers['Authorization'] = `Bearer ${currentToken}`;
+    }
+    return { ...options, headers };
+  };
+
+  const response = await fetch(url, withToken(token));
+  if (response.status !== 401 || !token) {
+    return response;
+  }
+  const refreshed = await refreshAccessToken();
+  return refreshed ? fetch(url, withToken(refreshed)) : response;
+};
+
 // Auth APIs
 export const authAPI = {
   login: async (email, password) => {
@@ -192,7 +265,7 @@ export const classAPI = {
       const url = `${API_BASE_URL}/classes?${params}`;
       console.log('🔵 Fetching classes from:', url);
       
-      const response = await fetch(url, {
+      const response = await authFetch(url, {
       method: 'GET',
       headers: getHeaders(),
     });
@@ -233,7 +306,7 @@ export const classAPI = {
   },
 
   getById: async (id) => {
-    const response = await fetch(`${API_BASE_URL}/classes/${id}`, {
+    const response = await authFetch(`${API_BASE_URL}/classes/${id}`, {
       method: 'GET',
       headers: getHeaders(),
     });
@@ -251,7 +324,7 @@ export const classAPI = {
       
       console.log('🔵 Creating class with data:', requestBody);
       
-      const response = await fetch(`${API_BASE_URL}/classes`, {
+      const response = await authFetch(`${API_BASE_URL}/classes`, {
         method: 'POST',
         headers: getHeaders(),
         body: JSON.stringify(requestBody),
@@ -284,7 +357,7 @@ export const classAPI = {
   },
 
   update: async (id, classData) => {
-    const response = await fetch(`${API_BASE_URL}/classes/${id}`, {
+    const response = await authFetch(`${API_BASE_URL}/classes/${id}`, {
       method: 'PUT',
       headers: getHeaders(),
       body: JSON.stringify({
@@ -301,7 +374,7 @@ export const classAPI = {
     try {
       console.log('🔵 Deleting class:', id);
       
-      const response = await fetch(`${API_BASE_URL}/classes/${id}`, {
+      const response = await authFetch(`${API_BASE_URL}/classes/${id}`, {
         method: 'DELETE',
         headers: getHeaders(),
       });
@@ -337,7 +410,7 @@ export const classAPI = {
     try {
       console.log('🔵 Enrolling student:', { sinhVienID, maThamGia });
       
-    const response = await fetch(`${API_BASE_URL}/classes/enroll`, {
+    const response = await authFetch(`${API_BASE_URL}/classes/enroll`, {
       method: 'POST',
       headers: getHeaders(),
       body: JSON.stringify({
@@ -372,7 +445,7 @@ export const classAPI = {
 
   getStudents: async (classId) => {
     try {
-      const response = await fetch(`${API_BASE_URL}/classes/${classId}/students`, {
+      const response = await authFetch(`${API_BASE_URL}/classes/${classId}/students`, {
         method: 'GET',
         headers: getHeaders(),
       });
@@ -390,11 +463,31 @@ export const classAPI = {
     }
   },
 
+  // Số liệu tổng quan của lớp (sĩ số, bài tập, bài chờ chấm...) trong một request
+  getDashboard: async (classId, recentPosts = 5) => {
+    try {
+      const response = await authFetch(`${API_BASE_URL}/classes/${classId}/dashboard?recentPosts=${recentPosts}`, {
+        method: 'GET',
+        headers: getHeaders(),
+      });
+      
+      if (!response.ok) {
+        console.error('Error fetching class dashboard:', response.status, response.statusText);
+        return null;
+      }
+      
+      return await response.json();
+    } catch (error) {
+      console.error('Error in getDashboard API:', error);
+      return null;
+    }
+  },
+
   addStudent: async (classId, email, mssv) => {
     try {
       console.log('🔵 Adding student to class:', { classId, email, mssv });
       
-    const response = await fetch(`${API_BASE_URL}/classes/${classId}/add-student`, {
+    const response = await authFetch(`${API_BASE_URL}/classes/${classId}/add-student`, {
       method: 'POST',
       headers: getHeaders(),
       body: JSON.stringify({
@@ -431,7 +524,7 @@ export const classAPI = {
 // Attendance APIs
 export const attendanceAPI = {
   get: async (classId, date) => {
-    const response = await fetch(`${API_BASE_URL}/attendance?classId=${classId}&date=${date}`, {
+    const response = await authFetch(`${API_BASE_URL}/attendance?classId=${classId}&date=${date}`, {
       method: 'GET',
       headers: getHeaders(),
     });
@@ -439,7 +532,7 @@ export const attendanceAPI = {
   },
 
   getAllByClass: async (classId) => {
-    const response = await fetch(`${API_BASE_URL}/attendance/class/${classId}`, {
+    const response = await authFetch(`${API_BASE_URL}/attendance/class/${classId}`, {
       method: 'GET',
       headers: getHeaders(),
     });
@@ -450,7 +543,7 @@ export const attendanceAPI = {
     try {
       console.log('🔵 Saving attendance:', { classId, date, records });
       
-    const response = await fetch(`${API_BASE_URL}/attendance`, {
+    const response = await authFetch(`${API_BASE_URL}/attendance`, {
       method: 'POST',
       headers: getHeaders(),
       body: JSON.stringify({
@@ -488,7 +581,7 @@ export const attendanceAPI = {
 // User APIs
 export const userAPI = {
   getAll: async () => {
-    const response = await fetch(`${API_BASE_URL}/users`, {
+    const response = await authFetch(`${API_BASE_URL}/users`, {
       method: 'GET',
       headers: getHeaders(),
     });
@@ -496,7 +589,7 @@ export const userAPI = {
   },
 
   getById: async (id) => {
-    const response = await fetch(`${API_BASE_URL}/users/${id}`, {
+    const response = await authFetch(`${API_BASE_URL}/users/${id}`, {
       method: 'GET',
       headers: getHeaders(),
     });
@@ -507,7 +600,7 @@ export const userAPI = {
     try {
       console.log('🔵 Creating user:', { ...userData, password: '***' });
       
-      const response = await fetch(`${API_BASE_URL}/users`, {
+      const response = await authFetch(`${API_BASE_URL}/users`, {
         method: 'POST',
         headers: getHeaders(),
         body: JSON.stringify(userData),
@@ -554,7 +647,7 @@ export const userAPI = {
     try {
       console.log('🔵 Updating user:', id, userData);
       
-      const response = await fetch(`${API_BASE_URL}/users/${id}`, {
+      const response = await authFetch(`${API_BASE_URL}/users/${id}`, {
         method: 'PUT',
         headers: getHeaders(),
         body: JSON.stringify(userData),
@@ -588,7 +681,7 @@ export const userAPI = {
     try {
       console.log('🔵 Deleting user:', id);
       
-      const response = await fetch(`${API_BASE_URL}/users/${id}`, {
+      const response = await authFetch(`${API_BASE_URL}/users/${id}`, {
         method: 'DELETE',
         headers: getHeaders(),
       });
@@ -621,7 +714,7 @@ export const userAPI = {
     try {
       console.log('🔵 Changing password for user:', id);
       
-      const response = await fetch(`${API_BASE_URL}/users/${id}/change-password`, {
+      const response = await authFetch(`${API_BASE_URL}/users/${id}/change-password`, {
         method: 'POST',
         headers: getHeaders(),
         body: JSON.stringify({
@@ -656,6 +749,26 @@ export const userAPI = {
 };
 
 // Grading APIs
+// Khóa Idempotency-Key (UUID v4). crypto.randomUUID chỉ có trong secure context (HTTPS / localhost),
+// truy cập qua http://<ip> thì dùng crypto.getRandomValues (có ở mọi context)
+export const generateIdempotencyKey = () => {
+  if (typeof crypto !== 'undefined' && typeof crypto.randomUUID === 'function') {
+    return crypto.randomUUID();
+  }
+  const bytes = new Uint8Array(16);
+  if (typeof crypto !== 'undefined' && typeof crypto.getRandomValues === 'function') {
+    crypto.getRandomValues(bytes);
+  } else {
+    for (let i = 0; i < bytes.length; i++) {
+      bytes[i] = Math.floor(Math.random() * 256);
+    }
+  }
+  bytes[6] = (bytes[6] & 0x0f) | 0x40; // version 4
+  bytes[8] = (bytes[8] & 0x3f) | 0x80; // variant RFC 4122
+  const hex = Array.from(bytes, (b) => b.toString(16).padStart(2, '0')).join('');
+  return `${hex.slice(0, 8)}-${hex.slice(8, 12)}-${hex.slice(12, 16)}-${hex.slice(16, 20)}-${hex.slice(20)}`;
+};
+
 export const gradingAPI = {
   getSubmissions: async (teacherId, studentId, classId) => {
     try {
@@ -667,7 +780,7 @@ export const gradingAPI = {
       const url = `${API_BASE_URL}/grading?${params}`;
       console.log('🔵 Fetching submissions from:', url);
       
-      const response = await fetch(url, {
+      const response = await authFetch(url, {
         method: 'GET',
         headers: getHeaders(),
       });
@@ -694,7 +807,7 @@ export const gradingAPI = {
   },
 
   gradeSubmission: async (submissionId, diem, nhanXet) => {
-    const response = await fetch(`${API_BASE_URL}/grading/${submissionId}/grade`, {
+    const response = await authFetch(`${API_BASE_URL}/grading/${submissionId}/grade`, {
       method: 'PUT',
       headers: getHeaders(),
       body: JSON.stringify({
@@ -705,13 +818,18 @@ export const gradingAPI = {
     return response.json();
   },
 
-  createSubmission: async (submissionData) => {
+  // idempotencyKey: giữ nguyên khi gửi lại cùng một lần nộp để server trả về bài nộp cũ thay vì báo trùng
+  createSubmission: async (submissionData, idempotencyKey) => {
     try {
       console.log('🔵 Creating submission:', submissionData);
       
-    const response = await fetch(`${API_BASE_URL}/grading`, {
+    const headers = getHeaders();
+    if (idempotencyKey) {
+      headers['Idempotency-Key'] = idempotencyKey;
+    }
+    const response = await authFetch(`${API_BASE_URL}/grading`, {
       method: 'POST',
-      headers: getHeaders(),
+      headers,
       body: JSON.stringify(submissionData),
     });
       
@@ -742,7 +860,7 @@ export const gradingAPI = {
   cleanupDuplicates: async () => {
     try {
       console.log('🔵 Cleaning up duplicate submissions...');
-      const response = await fetch(`${API_BASE_URL}/grading/cleanup-duplicates`, {
+      const response = await authFetch(`${API_BASE_URL}/grading/cleanup-duplicates`, {
         method: 'DELETE',
         headers: getHeaders(),
       });
@@ -777,7 +895,7 @@ export const postAPI = {
   getByClass: async (classId) => {
     try {
       console.log('🔵 Fetching posts for class:', classId);
-      const response = await fetch(`${API_BASE_URL}/posts/class/${classId}`, {
+      const response = await authFetch(`${API_BASE_URL}/posts/class/${classId}`, {
         method: 'GET',
         headers: getHeaders(),
       });
@@ -800,7 +918,7 @@ export const postAPI = {
     try {
       console.log('🔵 Creating post:', { classId, authorId, content });
       
-      const response = await fetch(`${API_BASE_URL}/posts`, {
+      const response = await authFetch(`${API_BASE_URL}/posts`, {
         method: 'POST',
         headers: getHeaders(),
         body: JSON.stringify({
@@ -837,7 +955,7 @@ export const postAPI = {
 
   delete: async (postId) => {
     try {
-      const response = await fetch(`${API_BASE_URL}/posts/${postId}`, {
+      const response = await authFetch(`${API_BASE_URL}/posts/${postId}`, {
         method: 'DELETE',
         headers: getHeaders(),
       });
@@ -872,7 +990,7 @@ export const assignmentAPI = {
       const url = type 
         ? `${API_BASE_URL}/assignments/class/${classId}?type=${type}`
         : `${API_BASE_URL}/assignments/class/${classId}`;
-      const response = await fetch(url, {
+      const response = await authFetch(url, {
         method: 'GET',
         headers: getHeaders(),
       });
@@ -893,7 +1011,7 @@ export const assignmentAPI = {
 
   getById: async (id) => {
     try {
-      const response = await fetch(`${API_BASE_URL}/assignments/${id}`, {
+      const response = await authFetch(`${API_BASE_URL}/assignments/${id}`, {
         method: 'GET',
         headers: getHeaders(),
       });
@@ -928,7 +1046,7 @@ export const assignmentAPI = {
       
       console.log('🔵 Creating assignment request body:', JSON.stringify(requestBody, null, 2));
       
-      const response = await fetch(`${API_BASE_URL}/assignments`, {
+      const response = await authFetch(`${API_BASE_URL}/assignments`, {
         method: 'POST',
         headers: getHeaders(),
         body: JSON.stringify(requestBody),
@@ -960,7 +1078,7 @@ export const assignmentAPI = {
 
   update: async (id, title, description, filePath, dueDate, maxScore) => {
     try {
-      const response = await fetch(`${API_BASE_URL}/assignments/${id}`, {
+      const response = await authFetch(`${API_BASE_URL}/assignments/${id}`, {
         method: 'PUT',
         headers: getHeaders(),
         body: JSON.stringify({
@@ -996,7 +1114,7 @@ export const assignmentAPI = {
   delete: async (id) => {
     try {
       console.log('🔵 [API] Deleting assignment with ID:', id);
-      const response = await fetch(`${API_BASE_URL}/assignments/${id}`, {
+      const response = await authFetch(`${API_BASE_URL}/assignments/${id}`, {
         method: 'DELETE',
         headers: getHeaders(),
       });
@@ -1035,7 +1153,7 @@ export const notificationAPI = {
   getByUser: async (userId) => {
     try {
       console.log('🔵 Fetching notifications for user:', userId);
-      const response = await fetch(`${API_BASE_URL}/notifications/user/${userId}`, {
+      const response = await authFetch(`${API_BASE_URL}/notifications/user/${userId}`, {
         method: 'GET',
         headers: getHeaders(),
       });
@@ -1056,7 +1174,7 @@ export const notificationAPI = {
 
   getUnreadByUser: async (userId) => {
     try {
-      const response = await fetch(`${API_BASE_URL}/notifications/user/${userId}/unread`, {
+      const response = await authFetch(`${API_BASE_URL}/notifications/user/${userId}/unread`, {
         method: 'GET',
         headers: getHeaders(),
       });
@@ -1077,7 +1195,7 @@ export const notificationAPI = {
     try {
       console.log('🔵 Creating notification:', { userId, title });
       
-      const response = await fetch(`${API_BASE_URL}/notifications`, {
+      const response = await authFetch(`${API_BASE_URL}/notifications`, {
         method: 'POST',
         headers: getHeaders(),
         body: JSON.stringify({
@@ -1114,7 +1232,7 @@ export const notificationAPI = {
 
   markAsRead: async (notificationId) => {
     try {
-      const response = await fetch(`${API_BASE_URL}/notifications/${notificationId}/read`, {
+      const response = await authFetch(`${API_BASE_URL}/notifications/${notificationId}/read`, {
         method: 'PUT',
         headers: getHeaders(),
       });
@@ -1142,7 +1260,7 @@ export const notificationAPI = {
 
   markAllAsRead: async (userId) => {
     try {
-      const response = await fetch(`${API_BASE_URL}/notifications/user/${userId}/read-all`, {
+      const response = await authFetch(`${API_BASE_URL}/notifications/user/${userId}/read-all`, {
         method: 'PUT',
         headers: getHeaders(),
       });
@@ -1176,7 +1294,7 @@ export const fileAPI = {
       const formData = new FormData();
       formData.append('file', file);
       
-      const response = await fetch(`${API_BASE_URL}/files/upload`, {
+      const response = await authFetch(`${API_BASE_URL}/files/upload`, {
         method: 'POST',
         body: formData,
         // Không set Content-Type header, browser sẽ tự động set với boundary
@@ -3,10 +3,26 @@ export const doLogout = (navigate) => {
   console.log('🔴 doLogout called');
   
   try {
+    // Thu hồi refresh token và access token ở server (không chờ kết quả)
+    const token = localStorage.getItem('token');
+    const refreshToken = localStorage.getItem('refresh_token');
+    if (token || refreshToken) {
+      fetch('http://localhost:5000/api/auth/logout', {
+        method: 'POST',
+        headers: {
+          'Content-Type': 'application/json',
+          ...(token ? { Authorization: `Bearer ${token}` } : {}),
+        },
+        body: JSON.stringify({ refreshToken }),
+        keepalive: true,
+      }).catch((e) => console.error('❌ Error calling logout API:', e));
+    }
+
     // Xóa tất cả dữ liệu liên quan đến user
     console.log('🔴 Removing user_info and token');
     localStorage.removeItem('user_info');
     localStorage.removeItem('token');
+    localStorage.removeItem('refresh_token');
     
     // Dispatch event để các component biết user đã logout
     window.dispatchEvent(new Event('user-update'));
@@ -58,8 +58,11 @@ CREATE TABLE IF NOT EXISTS submissions (
     trang_thai VARCHAR(50) DEFAULT 'Pending',
     submitted_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     graded_at TIMESTAMP,
+    idempotency_key VARCHAR(100),
     FOREIGN KEY (student_id) REFERENCES users(id) ON DELETE CASCADE,
-    FOREIGN KEY (class_id) REFERENCES classes(class_id) ON DELETE CASCADE
+    FOREIGN KEY (class_id) REFERENCES classes(class_id) ON DELETE CASCADE,
+    CONSTRAINT uk_submissions_student_class_bai_tap UNIQUE (student_id, class_id, ten_bai_tap),
+    CONSTRAINT uk_submissions_student_idempotency_key UNIQUE (student_id, idempotency_key)
 );
 
 -- Bảng Notifications
@@ -101,8 +104,78 @@ CREATE TABLE IF NOT EXISTS assignments (
     FOREIGN KEY (class_id) REFERENCES classes(class_id) ON DELETE CASCADE
 );
 
+-- Bảng File Blobs (nội dung file, lưu một lần theo SHA-256)
+CREATE TABLE IF NOT EXISTS file_blobs (
+    sha256 VARCHAR(64) PRIMARY KEY,
+    size BIGINT NOT NULL,
+    ref_count INTEGER NOT NULL DEFAULT 1,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Bảng Files (URL công khai /api/files/{filename} trỏ tới blob)
+CREATE TABLE IF NOT EXISTS files (
+    filename VARCHAR(255) PRIMARY KEY,
+    sha256 VARCHAR(64) NOT NULL,
+    original_name VARCHAR(255),
+    content_type VARCHAR(255),
+    size BIGINT,
+    uploader_id INTEGER,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (sha256) REFERENCES file_blobs(sha256)
+);
+
+-- Bảng Upload Sessions (upload theo chunk đang dở dang)
+CREATE TABLE IF NOT EXISTS upload_sessions (
+    upload_id VARCHAR(36) PRIMARY KEY,
+    original_filename VARCHAR(255),
+    total_size BIGINT NOT NULL,
+    uploader_id INTEGER,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Bảng Refresh Tokens (chỉ lưu SHA-256 của token)
+CREATE TABLE IF NOT EXISTS refresh_tokens (
+    token_hash VARCHAR(64) PRIMARY KEY,
+    user_id INTEGER NOT NULL,
+    access_token_id VARCHAR(36) NOT NULL,
+    expires_at TIMESTAMP NOT NULL,
+    access_expires_at TIMESTAMP NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    revoked_at TIMESTAMP,
+    replaced_by VARCHAR(64),
+    FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+);
+
+-- Bảng access token bị thu hồi khi đăng xuất (không gắn với refresh token nào)
+CREATE TABLE IF NOT EXISTS revoked_access_tokens (
+    token_id VARCHAR(36) PRIMARY KEY,
+    expires_at TIMESTAMP NOT NULL
+);
+
+-- Bảng Email Outbox (email chờ gửi nền)
+CREATE TABLE IF NOT EXISTS email_outbox (
+    id BIGSERIAL PRIMARY KEY,
+    recipient VARCHAR(255) NOT NULL,
+    bcc TEXT,
+    subject TEXT NOT NULL,
+    body TEXT NOT NULL,
+    status VARCHAR(16) NOT NULL CHECK (status IN ('PENDING', 'SENDING', 'SENT', 'DEAD')),
+    attempts INTEGER NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP NOT NULL,
+    last_error TEXT,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    sent_at TIMESTAMP
+);
+
+-- Tìm kiếm lớp theo chuỗi con (LIKE '%q%') dùng index trigram
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+-- Sequence cấp mã tham gia lớp (mã = hoán vị có khóa của giá trị sequence)
+CREATE SEQUENCE IF NOT EXISTS class_join_code_seq;
+
 -- Tạo indexes để tối ưu hiệu suất
 CREATE INDEX IF NOT EXISTS idx_users_email ON users(email);
+CREATE INDEX IF NOT EXISTS idx_users_email_lower ON users(LOWER(email));
 CREATE INDEX IF NOT EXISTS idx_users_mssv ON users(mssv);
 CREATE INDEX IF NOT EXISTS idx_classes_giao_vien ON classes(giao_vien_id);
 CREATE INDEX IF NOT EXISTS idx_classes_ma_tham_gia ON classes(ma_tham_gia);
@@ -116,4 +189,14 @@ CREATE INDEX IF NOT EXISTS idx_posts_class ON posts(class_id);
 CREATE INDEX IF NOT EXISTS idx_posts_author ON posts(author_id);
 CREATE INDEX IF NOT EXISTS idx_assignments_class ON assignments(class_id);
 CREATE INDEX IF NOT EXISTS idx_assignments_type ON assignments(type);
-
+CREATE INDEX IF NOT EXISTS idx_files_sha256 ON files(sha256);
+CREATE INDEX IF NOT EXISTS idx_files_uploader ON files(uploader_id);
+CREATE INDEX IF NOT EXISTS idx_submissions_file_path ON submissions(file_path);
+CREATE INDEX IF NOT EXISTS idx_assignments_file_path ON assignments(file_path);
+CREATE INDEX IF NOT EXISTS idx_posts_file_path ON posts(file_path);
+CREATE INDEX IF NOT EXISTS idx_refresh_tokens_user ON refresh_tokens(user_id);
+CREATE INDEX IF NOT EXISTS idx_posts_class_created ON posts(class_id, created_at DESC);
+CREATE INDEX IF NOT EXISTS idx_classes_giao_vien_class ON classes(giao_vien_id, class_id DESC);
+CREATE INDEX IF NOT EXISTS idx_classes_ten_lop_trgm ON classes USING gin (LOWER(ten_lop) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_classes_ma_tham_gia_trgm ON classes USING gin (LOWER(ma_tham_gia) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_email_outbox_due ON email_outbox(next_attempt_at) WHERE status IN ('PENDING', 'SENDING');